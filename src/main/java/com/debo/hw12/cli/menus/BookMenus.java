@@ -37,10 +37,10 @@ public class BookMenus {
 
     public static void searchBooks(Scanner scanner, BookService bookService) {
         try {
-            System.out.print("Search by (title/author/isbn): ");
+            System.out.print("Search by (title/author/isbn/genre/fuzzy): ");
             String criteria = scanner.nextLine().toLowerCase();
-            if (!Arrays.asList("title", "author", "isbn").contains(criteria)) {
-                System.out.println("Invalid search criteria. Please use title, author, or isbn.");
+            if (!Arrays.asList("title", "author", "isbn", "genre", "fuzzy").contains(criteria)) {
+                System.out.println("Invalid search criteria. Please use title, author, isbn, genre, or fuzzy.");
                 return;
             }
 
@@ -198,7 +198,7 @@ public class BookMenus {
                     String.join(", ", book.getGenres()),
                     book.isActive() ? "Yes" : "No",
                     book.getTotalCopiesCount(),
-                    book.getAvailableCopiesCount(),
+                    bookService.countAvailableCopies(book.getId()),
                     formatCopyDetails(book.getCopies())
             );
         } catch (IllegalArgumentException e) {
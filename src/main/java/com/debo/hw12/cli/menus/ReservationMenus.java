@@ -27,7 +27,7 @@ public class ReservationMenus {
                 Expiry Date: %s
                 """,
                     reservation.getId(),
-                    reservation.getQueuePosition(),
+                    loanService.getQueuePosition(reservation),
                     reservation.getExpiryDate().format(DATE_FORMATTER));
         } catch (ValidationException | BusinessRuleException e) {
             System.out.println("Error: " + e.getMessage());
@@ -79,7 +79,7 @@ public class ReservationMenus {
                 """,
                     res.getId(),
                     res.getPatron().getName(),
-                    res.getQueuePosition(),
+                    loanService.getQueuePosition(res),
                     res.getReservationDate().format(DATE_FORMATTER),
                     res.getExpiryDate().format(DATE_FORMATTER),
                     res.getStatus()));
@@ -113,7 +113,7 @@ public class ReservationMenus {
                 """,
                     res.getItem().getTitle(),
                     res.getId(),
-                    res.getQueuePosition(),
+                    loanService.getQueuePosition(res),
                     res.getReservationDate().format(DATE_FORMATTER),
                     res.getExpiryDate().format(DATE_FORMATTER)));
         } catch (IllegalArgumentException e) {
@@ -0,0 +1,9 @@
+package com.debo.hw12.enums;
+
+public enum Facet {
+    GENRE,
+    CONDITION,
+    YEAR,
+    TYPE,
+    STATUS
+}
@@ -3,5 +3,8 @@ package com.debo.hw12.enums;
 public enum ReservationStatus {
     PENDING,
     EXPIRED,
-    CANCELLED
+    CANCELLED,
+    // A copy is held for the patron until pickup or expiry.
+    READY,
+    FULFILLED
 }
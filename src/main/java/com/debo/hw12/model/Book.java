@@ -4,9 +4,14 @@ import com.debo.hw12.enums.Condition;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 @Data
@@ -18,27 +23,53 @@ public class Book extends LibraryItem {
     private String author;
     private String publisher;
     private int publicationYear;
-    @Builder.Default
-    private Set<String> genres = new HashSet<>();
+    // Bitset over TermDictionary.genres() ids, replaced whole on every change; null when empty.
+    @ToString.Exclude
+    private volatile long[] genres;
     @Builder.Default
     private Condition condition = Condition.GOOD;
 
+    public void setAuthor(String author) {
+        this.author = TermDictionary.names().intern(author);
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = TermDictionary.names().intern(publisher);
+    }
+
+    // Live view of the genre bits.
+    @ToString.Include(name = "genres")
+    public Set<String> getGenres() {
+        return new GenreSet();
+    }
+
+    public void setGenres(Collection<String> genres) {
+        replaceGenres(bitsOf(genres));
+    }
+
     public void addGenre(String genre) {
         if (genre == null || genre.trim().isEmpty()) {
             throw new IllegalArgumentException("Genre cannot be null or empty");
         }
-        genres.add(genre.trim());
+        setGenreBit(TermDictionary.genres().add(genre.trim()), true);
     }
 
     public void removeGenre(String genre) {
         if (genre == null || genre.trim().isEmpty()) {
             throw new IllegalArgumentException("Genre cannot be null or empty");
         }
-        genres.remove(genre.trim());
+        setGenreBit(TermDictionary.genres().idOf(genre.trim()), false);
     }
 
     public boolean hasGenre(String genre) {
-        return genre != null && genres.contains(genre.trim());
+        return genre != null && hasGenreId(TermDictionary.genres().idOf(genre.trim()));
+    }
+
+    // For filters that resolve the genre id once up front.
+    public boolean hasGenreId(int genreId) {
+        long[] bits = genres;
+        return genreId >= 0 && bits != null && (genreId >> 6) < bits.length
+                && (bits[genreId >> 6] & (1L << genreId)) != 0;
     }
 
     public void updateCondition(Condition newCondition) {
@@ -47,4 +78,138 @@ public class Book extends LibraryItem {
         }
         this.condition = newCondition;
     }
-}
\ No newline at end of file
+
+    private synchronized boolean setGenreBit(int genreId, boolean present) {
+        if (genreId < 0 || hasGenreId(genreId) == present) {
+            return false;
+        }
+        long[] bits = genres == null ? new long[0] : genres;
+        bits = Arrays.copyOf(bits, Math.max(bits.length, (genreId >> 6) + 1));
+        bits[genreId >> 6] ^= 1L << genreId;
+        genres = trim(bits);
+        return true;
+    }
+
+    // Whole-set writes take the same lock as setGenreBit, so neither loses the other's change.
+    private synchronized void replaceGenres(long[] bits) {
+        genres = bits;
+    }
+
+    private static long[] bitsOf(Collection<String> genres) {
+        if (genres == null) {
+            return null;
+        }
+        long[] bits = new long[0];
+        for (String genre : genres) {
+            int id = TermDictionary.genres().add(genre);
+            if ((id >> 6) >= bits.length) {
+                bits = Arrays.copyOf(bits, (id >> 6) + 1);
+            }
+            bits[id >> 6] |= 1L << id;
+        }
+        return trim(bits);
+    }
+
+    // Trailing zero words are dropped so equal genre sets have equal arrays.
+    private static long[] trim(long[] bits) {
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0) {
+            length--;
+        }
+        return length == 0 ? null : length == bits.length ? bits : Arrays.copyOf(bits, length);
+    }
+
+    public abstract static class BookBuilder<C extends Book, B extends BookBuilder<C, B>> extends LibraryItemBuilder<C, B> {
+        public B author(String author) {
+            this.author = TermDictionary.names().intern(author);
+            return self();
+        }
+
+        public B publisher(String publisher) {
+            this.publisher = TermDictionary.names().intern(publisher);
+            return self();
+        }
+
+        public B genres(Collection<String> genres) {
+            this.genres = bitsOf(genres);
+            return self();
+        }
+    }
+
+    private final class GenreSet extends AbstractSet<String> {
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String genre && hasGenreId(TermDictionary.genres().idOf(genre));
+        }
+
+        @Override
+        public boolean add(String genre) {
+            return setGenreBit(TermDictionary.genres().add(genre), true);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof String genre && setGenreBit(TermDictionary.genres().idOf(genre), false);
+        }
+
+        @Override
+        public void clear() {
+            replaceGenres(null);
+        }
+
+        @Override
+        public int size() {
+            long[] bits = genres;
+            int size = 0;
+            if (bits != null) {
+                for (long word : bits) {
+                    size += Long.bitCount(word);
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            long[] bits = genres == null ? new long[0] : genres;
+            return new Iterator<>() {
+                private int next = nextSet(0);
+                private int last = -1;
+
+                private int nextSet(int from) {
+                    for (int word = from >> 6; word < bits.length; word++) {
+                        long remaining = bits[word] & (-1L << (word == from >> 6 ? from : 0));
+                        if (remaining != 0) {
+                            return (word << 6) + Long.numberOfTrailingZeros(remaining);
+                        }
+                    }
+                    return -1;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public String next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = nextSet(next + 1);
+                    return TermDictionary.genres().get(last);
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0) {
+                        throw new IllegalStateException();
+                    }
+                    setGenreBit(last, false);
+                    last = -1;
+                }
+            };
+        }
+    }
+}
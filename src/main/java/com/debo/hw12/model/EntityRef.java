@@ -0,0 +1,85 @@
+package com.debo.hw12.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.UUID;
+
+// Reference from one entity to another by id. The target is only cached weakly, so a reference
+// never keeps an entity (or whatever that entity points to) on the heap; once the cache is
+// gone the id is looked up again in the table the reference was read against. A reference
+// made from an object has no table: its target stays cached for as long as a table holds it,
+// and resolves to null once nothing does. Models never look entities up themselves.
+public final class EntityRef<T> {
+    private final UUID id;
+    private final Map<UUID, ? extends T> table;
+    private volatile WeakReference<T> target;
+
+    private EntityRef(UUID id, T target, Map<UUID, ? extends T> table) {
+        this.id = id;
+        this.table = table;
+        this.target = target == null ? null : new WeakReference<>(target);
+    }
+
+    public static <T> EntityRef<T> to(UUID id, T entity) {
+        return entity == null ? null : new EntityRef<>(id, entity, null);
+    }
+
+    // A reference that is resolved against the given table the first time it is followed.
+    public static <T> EntityRef<T> lazy(UUID id, Map<UUID, ? extends T> table) {
+        return id == null ? null : new EntityRef<>(id, null, table);
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    T resolve() {
+        WeakReference<T> cached = target;
+        T value = cached == null ? null : cached.get();
+        if (value == null && id != null && table != null) {
+            value = table.get(id);
+            if (value != null) {
+                target = new WeakReference<>(value);
+            }
+        }
+        return value;
+    }
+
+    static <T> T resolve(EntityRef<T> ref) {
+        return ref == null ? null : ref.resolve();
+    }
+
+    static UUID idOf(EntityRef<?> ref) {
+        return ref == null ? null : ref.id;
+    }
+
+    // Entities built without an id (tests, drafts) can only be matched by identity.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EntityRef<?> other)) {
+            return false;
+        }
+        if (id == null || other.id == null) {
+            return id == null && other.id == null && peek() != null && peek() == other.peek();
+        }
+        return id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : System.identityHashCode(peek());
+    }
+
+    @Override
+    public String toString() {
+        return "EntityRef(" + id + ")";
+    }
+
+    private T peek() {
+        WeakReference<T> cached = target;
+        return cached == null ? null : cached.get();
+    }
+}
@@ -0,0 +1,46 @@
+package com.debo.hw12.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Loan and reservation times are held as nanoseconds since the epoch of the local wall clock
+// (the LocalDateTime read as if it were UTC), so sweeps compare longs and converting back gives
+// the exact LocalDateTime that was stored. Covers the years 1677 to 2262.
+public final class EpochTime {
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private EpochTime() {
+    }
+
+    public static long now() {
+        return of(LocalDateTime.now());
+    }
+
+    public static long of(LocalDateTime value) {
+        if (value == null) {
+            return NONE;
+        }
+        return ofSeconds(value.toEpochSecond(ZoneOffset.UTC), value.getNano());
+    }
+
+    public static LocalDateTime toLocalDateTime(long nanos) {
+        if (nanos == NONE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds(nanos), nanoOfSecond(nanos), ZoneOffset.UTC);
+    }
+
+    public static long seconds(long nanos) {
+        return Math.floorDiv(nanos, NANOS_PER_SECOND);
+    }
+
+    public static int nanoOfSecond(long nanos) {
+        return (int) Math.floorMod(nanos, NANOS_PER_SECOND);
+    }
+
+    public static long ofSeconds(long seconds, int nanoOfSecond) {
+        return Math.addExact(Math.multiplyExact(seconds, NANOS_PER_SECOND), nanoOfSecond);
+    }
+}
@@ -0,0 +1,27 @@
+package com.debo.hw12.model;
+
+import com.debo.hw12.enums.Condition;
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.enums.ItemType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Set;
+
+// Values within one facet are alternatives, facets are combined with AND. Empty sets and null
+// years leave a facet unconstrained. Types and statuses apply to copies: a book matches when
+// at least one of its copies has an allowed type and status.
+@Data
+@Builder
+public class FacetQuery {
+    @Builder.Default
+    private Set<String> genres = Set.of();
+    @Builder.Default
+    private Set<Condition> conditions = Set.of();
+    private Integer minYear;
+    private Integer maxYear;
+    @Builder.Default
+    private Set<ItemType> types = Set.of();
+    @Builder.Default
+    private Set<ItemStatus> statuses = Set.of();
+}
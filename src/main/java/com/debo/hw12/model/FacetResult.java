@@ -0,0 +1,17 @@
+package com.debo.hw12.model;
+
+import com.debo.hw12.enums.Facet;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+// Matching books plus, per facet value, how many of them (for book facets) or of their
+// matching copies (for TYPE and STATUS) carry that value.
+@Data
+@AllArgsConstructor
+public class FacetResult {
+    private final List<Book> books;
+    private final Map<Facet, Map<String, Integer>> counts;
+}
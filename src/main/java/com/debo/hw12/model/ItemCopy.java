@@ -9,36 +9,70 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 @Data
 @Builder
 @AllArgsConstructor
 public class ItemCopy {
+    private static final AtomicReferenceFieldUpdater<ItemCopy, ItemStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(ItemCopy.class, ItemStatus.class, "status");
+
     private final UUID id;
-    private final LibraryItem item;
+    private final EntityRef<LibraryItem> itemRef;
     private String barcode;
     private String location;
-    private ItemStatus status;
+    // Circulation moves it with transition so concurrent desks cannot both win the same copy.
+    private volatile ItemStatus status;
     private LocalDateTime acquisitionDate;
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    private List<LoanRecord> loanHistory;
+    private List<EntityRef<LoanRecord>> loanHistoryRefs;
     private Condition condition;
     private String notes;
     private ItemType type;
 
     public ItemCopy(LibraryItem item, String barcode, String location) {
         this.id = UUID.randomUUID();
-        this.item = item;
+        this.itemRef = item == null ? null : EntityRef.to(item.getId(), item);
         this.barcode = barcode;
         this.location = location;
         this.status = ItemStatus.AVAILABLE;
         this.acquisitionDate = LocalDateTime.now();
-        this.loanHistory = new ArrayList<>();
+        this.loanHistoryRefs = new ArrayList<>();
         this.condition = Condition.GOOD;
     }
 
     public boolean isAvailable() {
         return this.status == ItemStatus.AVAILABLE;
     }
-}
+
+    // Moves the copy from `expected` to `next` if nobody has moved it since; false otherwise.
+    public boolean transition(ItemStatus expected, ItemStatus next) {
+        return STATUS.compareAndSet(this, expected, next);
+    }
+
+    public LibraryItem getItem() {
+        return EntityRef.resolve(itemRef);
+    }
+
+    public UUID getItemId() {
+        return EntityRef.idOf(itemRef);
+    }
+
+    public List<LoanRecord> getLoanHistory() {
+        return loanHistoryRefs == null ? null : new RefList<>(loanHistoryRefs, LoanRecord.class, LoanRecord::getId);
+    }
+
+    public static class ItemCopyBuilder {
+        public ItemCopyBuilder item(LibraryItem item) {
+            this.itemRef = item == null ? null : EntityRef.to(item.getId(), item);
+            return this;
+        }
+
+        public ItemCopyBuilder loanHistory(List<LoanRecord> loanHistory) {
+            this.loanHistoryRefs = loanHistory == null ? null : RefList.refsOf(loanHistory, LoanRecord::getId);
+            return this;
+        }
+    }
+}
\ No newline at end of file
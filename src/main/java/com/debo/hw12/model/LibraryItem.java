@@ -1,6 +1,5 @@
 package com.debo.hw12.model;
 
-import com.debo.hw12.enums.ItemStatus;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -37,12 +36,6 @@ public abstract class LibraryItem {
         copies.add(copy);
     }
 
-    public int getAvailableCopiesCount() {
-        return (int) copies.stream()
-                .filter(copy -> copy.getStatus() == ItemStatus.AVAILABLE)
-                .count();
-    }
-
     public int getTotalCopiesCount() {
         return copies.size();
     }
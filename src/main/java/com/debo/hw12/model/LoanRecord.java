@@ -14,18 +14,20 @@ import java.util.UUID;
 public class LoanRecord {
     @EqualsAndHashCode.Include
     private final UUID id;
-    @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    private ItemCopy itemCopy;
-    @ToString.Exclude
+    private EntityRef<ItemCopy> itemCopyRef;
     @EqualsAndHashCode.Exclude
-    private Patron patron;
+    private EntityRef<Patron> patronRef;
+    // Epoch nanos, see EpochTime; NONE when unset.
     @EqualsAndHashCode.Exclude
-    private LocalDateTime checkoutDate;
+    @Builder.Default
+    private long checkoutAt = EpochTime.NONE;
     @EqualsAndHashCode.Exclude
-    private LocalDateTime dueDate;
+    @Builder.Default
+    private long dueAt = EpochTime.NONE;
     @EqualsAndHashCode.Exclude
-    private LocalDateTime returnDate;
+    @Builder.Default
+    private long returnedAt = EpochTime.NONE;
     @EqualsAndHashCode.Exclude
     private double lateFees;
     @EqualsAndHashCode.Exclude
@@ -36,14 +38,67 @@ public class LoanRecord {
 
     public LoanRecord(ItemCopy itemCopy, Patron patron, LocalDateTime dueDate) {
         this.id = UUID.randomUUID();
-        this.itemCopy = itemCopy;
-        this.patron = patron;
-        this.checkoutDate = LocalDateTime.now();
-        this.dueDate = dueDate;
+        setItemCopy(itemCopy);
+        setPatron(patron);
+        this.checkoutAt = EpochTime.now();
+        this.dueAt = EpochTime.of(dueDate);
+        this.returnedAt = EpochTime.NONE;
         this.status = LoanStatus.ACTIVE;
         this.lateFeeAccrual = assignDefaultLateFeeAccrual(patron.getType());
     }
 
+    public LocalDateTime getCheckoutDate() {
+        return EpochTime.toLocalDateTime(checkoutAt);
+    }
+
+    public void setCheckoutDate(LocalDateTime checkoutDate) {
+        this.checkoutAt = EpochTime.of(checkoutDate);
+    }
+
+    public LocalDateTime getDueDate() {
+        return EpochTime.toLocalDateTime(dueAt);
+    }
+
+    public void setDueDate(LocalDateTime dueDate) {
+        this.dueAt = EpochTime.of(dueDate);
+    }
+
+    public LocalDateTime getReturnDate() {
+        return EpochTime.toLocalDateTime(returnedAt);
+    }
+
+    public void setReturnDate(LocalDateTime returnDate) {
+        this.returnedAt = EpochTime.of(returnDate);
+    }
+
+    public boolean isOverdueAt(long now) {
+        return dueAt != EpochTime.NONE && now > dueAt;
+    }
+
+    public ItemCopy getItemCopy() {
+        return EntityRef.resolve(itemCopyRef);
+    }
+
+    public void setItemCopy(ItemCopy itemCopy) {
+        this.itemCopyRef = itemCopy == null ? null : EntityRef.to(itemCopy.getId(), itemCopy);
+    }
+
+    public UUID getItemCopyId() {
+        return EntityRef.idOf(itemCopyRef);
+    }
+
+    public Patron getPatron() {
+        return EntityRef.resolve(patronRef);
+    }
+
+    public void setPatron(Patron patron) {
+        this.patronRef = patron == null ? null : EntityRef.to(patron.getId(), patron);
+    }
+
+    public UUID getPatronId() {
+        return EntityRef.idOf(patronRef);
+    }
+
     private LateFeeAccrual assignDefaultLateFeeAccrual(PatronType type) {
         return switch (type) {
             case STUDENT -> new WeeklyLateFeeAccrualImpl();
@@ -52,4 +107,28 @@ public class LoanRecord {
             default -> new DailyLateFeeAccrualImpl();
         };
     }
-}
+
+    public static class LoanRecordBuilder {
+        public LoanRecordBuilder checkoutDate(LocalDateTime checkoutDate) {
+            return checkoutAt(EpochTime.of(checkoutDate));
+        }
+
+        public LoanRecordBuilder dueDate(LocalDateTime dueDate) {
+            return dueAt(EpochTime.of(dueDate));
+        }
+
+        public LoanRecordBuilder returnDate(LocalDateTime returnDate) {
+            return returnedAt(EpochTime.of(returnDate));
+        }
+
+        public LoanRecordBuilder itemCopy(ItemCopy itemCopy) {
+            this.itemCopyRef = itemCopy == null ? null : EntityRef.to(itemCopy.getId(), itemCopy);
+            return this;
+        }
+
+        public LoanRecordBuilder patron(Patron patron) {
+            this.patronRef = patron == null ? null : EntityRef.to(patron.getId(), patron);
+            return this;
+        }
+    }
+}
\ No newline at end of file
@@ -18,10 +18,10 @@ public class Patron {
     private boolean active;
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    private Set<LoanRecord> currentLoans;
+    private Set<EntityRef<LoanRecord>> currentLoanRefs;
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    private List<LoanRecord> loanHistory;
+    private List<EntityRef<LoanRecord>> loanHistoryRefs;
 
     public Patron(String name, String email, PatronType type) {
         this.id = UUID.randomUUID();
@@ -30,7 +30,27 @@ public class Patron {
         this.type = type;
         this.registrationDate = LocalDateTime.now();
         this.active = true;
-        this.currentLoans = new HashSet<>();
-        this.loanHistory = new ArrayList<>();
+        this.currentLoanRefs = new HashSet<>();
+        this.loanHistoryRefs = new ArrayList<>();
+    }
+
+    public Set<LoanRecord> getCurrentLoans() {
+        return currentLoanRefs == null ? null : new RefSet<>(currentLoanRefs, LoanRecord.class, LoanRecord::getId);
+    }
+
+    public List<LoanRecord> getLoanHistory() {
+        return loanHistoryRefs == null ? null : new RefList<>(loanHistoryRefs, LoanRecord.class, LoanRecord::getId);
+    }
+
+    public static class PatronBuilder {
+        public PatronBuilder currentLoans(Set<LoanRecord> currentLoans) {
+            this.currentLoanRefs = currentLoans == null ? null : RefSet.refsOf(currentLoans, LoanRecord::getId);
+            return this;
+        }
+
+        public PatronBuilder loanHistory(List<LoanRecord> loanHistory) {
+            this.loanHistoryRefs = loanHistory == null ? null : RefList.refsOf(loanHistory, LoanRecord::getId);
+            return this;
+        }
     }
 }
@@ -0,0 +1,82 @@
+package com.debo.hw12.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+// List view over stored references; elements are resolved as they are read.
+final class RefList<T> extends AbstractList<T> {
+    private final List<EntityRef<T>> refs;
+    private final Class<T> type;
+    private final Function<T, UUID> idOf;
+
+    RefList(List<EntityRef<T>> refs, Class<T> type, Function<T, UUID> idOf) {
+        this.refs = refs;
+        this.type = type;
+        this.idOf = idOf;
+    }
+
+    static <T> List<EntityRef<T>> refsOf(List<T> entities, Function<T, UUID> idOf) {
+        List<EntityRef<T>> refs = new ArrayList<>(entities.size());
+        entities.forEach(entity -> refs.add(EntityRef.to(idOf.apply(entity), entity)));
+        return refs;
+    }
+
+    @Override
+    public T get(int index) {
+        return refs.get(index).resolve();
+    }
+
+    @Override
+    public int size() {
+        return refs.size();
+    }
+
+    @Override
+    public T set(int index, T entity) {
+        return EntityRef.resolve(refs.set(index, EntityRef.to(idOf.apply(entity), entity)));
+    }
+
+    @Override
+    public void add(int index, T entity) {
+        refs.add(index, EntityRef.to(idOf.apply(entity), entity));
+    }
+
+    @Override
+    public T remove(int index) {
+        return EntityRef.resolve(refs.remove(index));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    // Matches on id so a lookup never has to resolve the whole history.
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < refs.size(); i++) {
+            EntityRef<T> ref = refs.get(i);
+            if (ref.getId() != null ? ref.getId().equals(idOfObject(o)) : ref.resolve() == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        refs.remove(index);
+        return true;
+    }
+
+    private UUID idOfObject(Object o) {
+        return type.isInstance(o) ? idOf.apply(type.cast(o)) : null;
+    }
+}
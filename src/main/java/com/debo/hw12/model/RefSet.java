@@ -0,0 +1,77 @@
+package com.debo.hw12.model;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Set view over stored references; membership is decided by id without touching the targets.
+final class RefSet<T> extends AbstractSet<T> {
+    private final Set<EntityRef<T>> refs;
+    private final Class<T> type;
+    private final Function<T, UUID> idOf;
+
+    RefSet(Set<EntityRef<T>> refs, Class<T> type, Function<T, UUID> idOf) {
+        this.refs = refs;
+        this.type = type;
+        this.idOf = idOf;
+    }
+
+    static <T> Set<EntityRef<T>> refsOf(Set<T> entities, Function<T, UUID> idOf) {
+        Set<EntityRef<T>> refs = new HashSet<>();
+        entities.forEach(entity -> refs.add(EntityRef.to(idOf.apply(entity), entity)));
+        return refs;
+    }
+
+    @Override
+    public int size() {
+        return refs.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return type.isInstance(o) && refs.contains(refTo(type.cast(o)));
+    }
+
+    @Override
+    public boolean add(T entity) {
+        return refs.add(refTo(entity));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return type.isInstance(o) && refs.remove(refTo(type.cast(o)));
+    }
+
+    @Override
+    public void clear() {
+        refs.clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<EntityRef<T>> it = refs.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return it.next().resolve();
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    private EntityRef<T> refTo(T entity) {
+        return EntityRef.to(idOf.apply(entity), entity);
+    }
+}
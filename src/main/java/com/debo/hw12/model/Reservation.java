@@ -1,12 +1,17 @@
 package com.debo.hw12.model;
 
 import com.debo.hw12.enums.ReservationStatus;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.function.ToIntFunction;
 
 @Data
 @Builder
@@ -14,19 +19,103 @@ import java.util.UUID;
 
 public class Reservation {
     private final UUID id;
-    private LibraryItem item;
-    private Patron patron;
-    private LocalDateTime reservationDate;
-    private LocalDateTime expiryDate;
+    private EntityRef<LibraryItem> itemRef;
+    private EntityRef<Patron> patronRef;
+    // Epoch nanos, see EpochTime; NONE when unset.
+    @Builder.Default
+    private long reservedAt = EpochTime.NONE;
+    @Builder.Default
+    private long expiresAt = EpochTime.NONE;
     private ReservationStatus status;
+    // Place in the queue when the reservation was last stored; getQueuePosition reads the live
+    // place instead while the reservation is pending in a table's hold queue.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private int queuePosition;
+    // Bound by the reservations table that indexes this reservation.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private transient ToIntFunction<Reservation> queueLookup;
+    // The copy set aside for the patron while READY.
+    private UUID heldCopyId;
 
     public Reservation(LibraryItem item, Patron patron) {
         this.id = UUID.randomUUID();
-        this.item = item;
-        this.patron = patron;
-        this.reservationDate = LocalDateTime.now();
+        setItem(item);
+        setPatron(patron);
+        this.reservedAt = EpochTime.now();
         this.status = ReservationStatus.PENDING;
-        this.expiryDate = LocalDateTime.now().plusDays(30);
+        this.expiresAt = EpochTime.of(LocalDateTime.now().plusDays(30));
     }
-}
+
+    public LocalDateTime getReservationDate() {
+        return EpochTime.toLocalDateTime(reservedAt);
+    }
+
+    public void setReservationDate(LocalDateTime reservationDate) {
+        this.reservedAt = EpochTime.of(reservationDate);
+    }
+
+    public LocalDateTime getExpiryDate() {
+        return EpochTime.toLocalDateTime(expiresAt);
+    }
+
+    public void setExpiryDate(LocalDateTime expiryDate) {
+        this.expiresAt = EpochTime.of(expiryDate);
+    }
+
+    public int getQueuePosition() {
+        ToIntFunction<Reservation> lookup = queueLookup;
+        int live = status == ReservationStatus.PENDING && lookup != null ? lookup.applyAsInt(this) : 0;
+        return live > 0 ? live : queuePosition;
+    }
+
+    public boolean isExpiredAt(long now) {
+        return expiresAt != EpochTime.NONE && now > expiresAt;
+    }
+
+    public LibraryItem getItem() {
+        return EntityRef.resolve(itemRef);
+    }
+
+    public void setItem(LibraryItem item) {
+        this.itemRef = item == null ? null : EntityRef.to(item.getId(), item);
+    }
+
+    public UUID getItemId() {
+        return EntityRef.idOf(itemRef);
+    }
+
+    public Patron getPatron() {
+        return EntityRef.resolve(patronRef);
+    }
+
+    public void setPatron(Patron patron) {
+        this.patronRef = patron == null ? null : EntityRef.to(patron.getId(), patron);
+    }
+
+    public UUID getPatronId() {
+        return EntityRef.idOf(patronRef);
+    }
+
+    public static class ReservationBuilder {
+        public ReservationBuilder reservationDate(LocalDateTime reservationDate) {
+            return reservedAt(EpochTime.of(reservationDate));
+        }
+
+        public ReservationBuilder expiryDate(LocalDateTime expiryDate) {
+            return expiresAt(EpochTime.of(expiryDate));
+        }
+
+        public ReservationBuilder item(LibraryItem item) {
+            this.itemRef = item == null ? null : EntityRef.to(item.getId(), item);
+            return this;
+        }
+
+        public ReservationBuilder patron(Patron patron) {
+            this.patronRef = patron == null ? null : EntityRef.to(patron.getId(), patron);
+            return this;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.debo.hw12.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SearchHit {
+    private final Book book;
+    private final double score;
+}
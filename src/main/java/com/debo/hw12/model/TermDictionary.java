@@ -0,0 +1,64 @@
+package com.debo.hw12.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Catalog-wide table of repeated book strings. Each distinct value gets one canonical instance
+// and a small dense id; ids are never reused, so they can index bitsets. Lookups are lock-free,
+// only adding a new value locks.
+public final class TermDictionary {
+    private static final TermDictionary GENRES = new TermDictionary();
+    private static final TermDictionary NAMES = new TermDictionary();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+
+    private TermDictionary() {
+    }
+
+    public static TermDictionary genres() {
+        return GENRES;
+    }
+
+    // Authors and publishers.
+    public static TermDictionary names() {
+        return NAMES;
+    }
+
+    public int idOf(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public int add(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    public String get(int id) {
+        return values[id];
+    }
+
+    public String intern(String value) {
+        return value == null ? null : get(add(value));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
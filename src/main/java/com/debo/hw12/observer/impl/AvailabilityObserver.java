@@ -14,16 +14,14 @@ public class AvailabilityObserver implements InventoryObserver {
 
     @Override
     public void onInventoryChange(ItemCopy copy) {
-        UUID bookId = copy.getItem().getId();
+        UUID bookId = copy.getItemId();
         updateAvailabilityCount(bookId);
     }
 
     private void updateAvailabilityCount(UUID bookId) {
         long count = LibraryState.getInstance()
-                .getItemCopies().values().stream()
-                .filter(copy -> copy.getItem().getId().equals(bookId))
-                .filter(copy -> copy.getStatus() == ItemStatus.AVAILABLE)
-                .count();
+                .getItemCopies()
+                .countCopies(bookId, ItemStatus.AVAILABLE);
         availableCopiesByBook.put(bookId, count);
     }
 
@@ -2,6 +2,7 @@ package com.debo.hw12.observer.impl;
 
 import com.debo.hw12.enums.ItemStatus;
 import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.Reservation;
 import com.debo.hw12.observer.InventoryObserver;
 import com.debo.hw12.state.LibraryState;
 import com.debo.hw12.util.EmailService;
@@ -15,19 +16,19 @@ public class PatronNotifier implements InventoryObserver {
 
     @Override
     public void onInventoryChange(ItemCopy copy) {
-        if (copy.getStatus() == ItemStatus.AVAILABLE) {
-            notifyWaitingPatrons(copy);
+        if (copy.getStatus() == ItemStatus.RESERVED) {
+            notifyHolder(copy);
         }
     }
 
-    private void notifyWaitingPatrons(ItemCopy copy) {
-        LibraryState.getInstance().getReservations().values().stream()
-                .filter(reservation -> reservation.getItem().getId().equals(copy.getItem().getId()))
-                .forEach(reservation -> {
-                    String message = String.format("The book '%s' is now available.",
-                            copy.getItem().getTitle());
-                    emailService.sendEmail(reservation.getPatron().getEmail(),
-                            "Book Available", message);
-                });
+    // Only the patron the copy has been set aside for hears about it.
+    private void notifyHolder(ItemCopy copy) {
+        Reservation reservation = LibraryState.getInstance().getReservations().heldFor(copy.getId());
+        if (reservation == null || reservation.getPatron() == null) {
+            return;
+        }
+        String message = String.format("The book '%s' is being held for you until %s.",
+                copy.getItem().getTitle(), reservation.getExpiryDate());
+        emailService.sendEmail(reservation.getPatron().getEmail(), "Book Available", message);
     }
 }
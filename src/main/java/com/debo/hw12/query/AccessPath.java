@@ -0,0 +1,15 @@
+package com.debo.hw12.query;
+
+import java.util.Collection;
+
+// An index that can narrow a single comparison down to a set of candidates. The candidates
+// may include entities that do not match; the planner always re-checks them against the
+// whole query.
+public interface AccessPath<T> {
+    String name();
+
+    // Expected number of candidates for the comparison, or -1 if this index cannot answer it.
+    long estimate(Query.Comparison comparison);
+
+    Collection<T> fetch(Query.Comparison comparison);
+}
@@ -0,0 +1,90 @@
+package com.debo.hw12.query;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Structured search over named fields: comparisons combined with AND, OR and NOT. Which fields
+// exist and how they are read is up to the Schema the query is run against.
+public sealed interface Query permits Query.Comparison, Query.And, Query.Or, Query.Not {
+
+    enum Operator {
+        EQUALS,
+        CONTAINS,
+        BETWEEN
+    }
+
+    // For BETWEEN, value and upper are inclusive bounds and either may be null for an open end.
+    record Comparison(String field, Operator operator, Object value, Object upper) implements Query {
+        @Override
+        public String toString() {
+            return switch (operator) {
+                case EQUALS -> field + " = " + quote(value);
+                case CONTAINS -> field + " contains " + quote(value);
+                case BETWEEN -> value == null ? field + " <= " + quote(upper)
+                        : upper == null ? field + " >= " + quote(value)
+                        : field + " between " + quote(value) + " and " + quote(upper);
+            };
+        }
+    }
+
+    record And(List<Query> parts) implements Query {
+        @Override
+        public String toString() {
+            return join(parts, " AND ");
+        }
+    }
+
+    record Or(List<Query> parts) implements Query {
+        @Override
+        public String toString() {
+            return join(parts, " OR ");
+        }
+    }
+
+    record Not(Query part) implements Query {
+        @Override
+        public String toString() {
+            return "NOT " + part;
+        }
+    }
+
+    static Query equalTo(String field, Object value) {
+        return new Comparison(field, Operator.EQUALS, value, null);
+    }
+
+    static Query contains(String field, String text) {
+        return new Comparison(field, Operator.CONTAINS, text, null);
+    }
+
+    static Query between(String field, Comparable<?> from, Comparable<?> to) {
+        return new Comparison(field, Operator.BETWEEN, from, to);
+    }
+
+    static Query atLeast(String field, Comparable<?> from) {
+        return new Comparison(field, Operator.BETWEEN, from, null);
+    }
+
+    static Query atMost(String field, Comparable<?> to) {
+        return new Comparison(field, Operator.BETWEEN, null, to);
+    }
+
+    static Query and(Query... parts) {
+        return new And(List.of(parts));
+    }
+
+    static Query or(Query... parts) {
+        return new Or(List.of(parts));
+    }
+
+    static Query not(Query part) {
+        return new Not(part);
+    }
+
+    private static String quote(Object value) {
+        return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+    }
+
+    private static String join(List<Query> parts, String separator) {
+        return parts.stream().map(Query::toString).collect(Collectors.joining(separator, "(", ")"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.debo.hw12.query;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// How a query will be answered: an access step that produces candidates (an index lookup, a
+// union of lookups, or a parallel scan of the whole table) and the query itself as the filter
+// every candidate has to pass.
+public final class QueryPlan<T> {
+    private final Step<T> access;
+    private final Query filter;
+    private final Predicate<T> test;
+
+    sealed interface Step<T> permits IndexLookup, Union, ParallelScan {
+        long estimate();
+
+        Collection<T> candidates();
+    }
+
+    record IndexLookup<T>(AccessPath<T> path, Query.Comparison comparison, long estimate) implements Step<T> {
+        @Override
+        public Collection<T> candidates() {
+            return path.fetch(comparison);
+        }
+    }
+
+    record Union<T>(List<Step<T>> parts) implements Step<T> {
+        @Override
+        public long estimate() {
+            return parts.stream().mapToLong(Step::estimate).sum();
+        }
+
+        @Override
+        public Collection<T> candidates() {
+            Set<T> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Step<T> part : parts) {
+                candidates.addAll(part.candidates());
+            }
+            return candidates;
+        }
+    }
+
+    record ParallelScan<T>(String table, Supplier<Collection<T>> rows) implements Step<T> {
+        @Override
+        public long estimate() {
+            return rows.get().size();
+        }
+
+        @Override
+        public Collection<T> candidates() {
+            return rows.get();
+        }
+    }
+
+    QueryPlan(Step<T> access, Query filter, Predicate<T> test) {
+        this.access = access;
+        this.filter = filter;
+        this.test = test;
+    }
+
+    public boolean usesIndex() {
+        return !(access instanceof ParallelScan);
+    }
+
+    public List<T> execute() {
+        if (access instanceof ParallelScan<T> scan) {
+            return scan.candidates().parallelStream().filter(test).toList();
+        }
+        return access.candidates().stream().filter(test).toList();
+    }
+
+    public String explain() {
+        StringBuilder out = new StringBuilder("Filter " + filter + "\n");
+        describe(access, 1, out);
+        return out.toString();
+    }
+
+    private static <T> void describe(Step<T> step, int depth, StringBuilder out) {
+        out.append("  ".repeat(depth));
+        switch (step) {
+            case IndexLookup<T> lookup -> out.append("IndexLookup ").append(lookup.path().name())
+                    .append(" (").append(lookup.comparison()).append(")");
+            case Union<T> union -> out.append("Union");
+            case ParallelScan<T> scan -> out.append("ParallelScan ").append(scan.table());
+        }
+        out.append(" ~").append(step.estimate()).append(" rows\n");
+        if (step instanceof Union<T> union) {
+            for (Step<T> part : union.parts()) {
+                describe(part, depth + 1, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.debo.hw12.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Picks the access step for a query. A comparison goes to the index with the smallest
+// estimate; an AND uses the cheapest of its parts' steps; an OR can only use indexes if every
+// part can, and then unions them. NOT, and anything no index covers, falls back to a parallel
+// scan. Whatever the step, the whole query is applied to its candidates as the filter.
+public class QueryPlanner<T> {
+    private final Schema<T> schema;
+    private final Supplier<Collection<T>> rows;
+    private final List<AccessPath<T>> paths;
+
+    public QueryPlanner(Schema<T> schema, Supplier<Collection<T>> rows, List<AccessPath<T>> paths) {
+        this.schema = schema;
+        this.rows = rows;
+        this.paths = List.copyOf(paths);
+    }
+
+    public Schema<T> getSchema() {
+        return schema;
+    }
+
+    public QueryPlan<T> plan(Query query) {
+        QueryPlan.Step<T> access = access(query);
+        if (access == null) {
+            access = new QueryPlan.ParallelScan<>(schema.getName(), rows);
+        }
+        return new QueryPlan<>(access, query, entity -> schema.test(query, entity));
+    }
+
+    private QueryPlan.Step<T> access(Query query) {
+        return switch (query) {
+            case Query.Comparison comparison -> lookup(comparison);
+            case Query.And and -> {
+                QueryPlan.Step<T> best = null;
+                for (Query part : and.parts()) {
+                    QueryPlan.Step<T> step = access(part);
+                    if (step != null && (best == null || step.estimate() < best.estimate())) {
+                        best = step;
+                    }
+                }
+                yield best;
+            }
+            case Query.Or or -> {
+                List<QueryPlan.Step<T>> steps = new ArrayList<>();
+                for (Query part : or.parts()) {
+                    QueryPlan.Step<T> step = access(part);
+                    if (step == null) {
+                        yield null;
+                    }
+                    steps.add(step);
+                }
+                yield steps.isEmpty() ? null : new QueryPlan.Union<>(steps);
+            }
+            case Query.Not ignored -> null;
+        };
+    }
+
+    private QueryPlan.Step<T> lookup(Query.Comparison comparison) {
+        QueryPlan.IndexLookup<T> best = null;
+        for (AccessPath<T> path : paths) {
+            long estimate = path.estimate(comparison);
+            if (estimate >= 0 && (best == null || estimate < best.estimate())) {
+                best = new QueryPlan.IndexLookup<>(path, comparison, estimate);
+            }
+        }
+        return best;
+    }
+}
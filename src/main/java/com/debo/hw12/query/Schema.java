@@ -0,0 +1,103 @@
+package com.debo.hw12.query;
+
+import com.debo.hw12.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// The queryable fields of one entity type and how a query is evaluated against an entity.
+// EQUALS compares strings exactly, numbers numerically and enums by name ignoring case;
+// CONTAINS is a case-insensitive substring test; BETWEEN compares numbers or strings. A value
+// that is not a number never matches a numeric field, on either side of a BETWEEN. A field
+// holding a collection matches when any of its elements does.
+public final class Schema<T> {
+    private final String name;
+    private final Map<String, Function<T, Object>> fields = new LinkedHashMap<>();
+
+    public Schema(String name) {
+        this.name = name;
+    }
+
+    public Schema<T> field(String field, Function<T, Object> accessor) {
+        fields.put(field, accessor);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void validate(Query query) throws ValidationException {
+        switch (query) {
+            case Query.Comparison comparison -> {
+                if (!fields.containsKey(comparison.field())) {
+                    throw new ValidationException("Unknown %s field: %s".formatted(name, comparison.field()));
+                }
+                if (comparison.operator() != Query.Operator.BETWEEN && comparison.value() == null) {
+                    throw new ValidationException("No value given for %s".formatted(comparison.field()));
+                }
+            }
+            case Query.And and -> {
+                for (Query part : and.parts()) {
+                    validate(part);
+                }
+            }
+            case Query.Or or -> {
+                for (Query part : or.parts()) {
+                    validate(part);
+                }
+            }
+            case Query.Not not -> validate(not.part());
+        }
+    }
+
+    public boolean test(Query query, T entity) {
+        return switch (query) {
+            case Query.Comparison comparison -> matches(comparison, fields.get(comparison.field()).apply(entity));
+            case Query.And and -> and.parts().stream().allMatch(part -> test(part, entity));
+            case Query.Or or -> or.parts().stream().anyMatch(part -> test(part, entity));
+            case Query.Not not -> !test(not.part(), entity);
+        };
+    }
+
+    private static boolean matches(Query.Comparison comparison, Object actual) {
+        if (actual instanceof Collection<?> values) {
+            return values.stream().anyMatch(value -> matches(comparison, value));
+        }
+        if (actual == null) {
+            return false;
+        }
+        return switch (comparison.operator()) {
+            case EQUALS -> compare(actual, comparison.value()) instanceof Integer order && order == 0;
+            case CONTAINS -> actual.toString().toLowerCase().contains(comparison.value().toString().toLowerCase());
+            case BETWEEN -> (comparison.value() == null
+                    || compare(actual, comparison.value()) instanceof Integer from && from >= 0)
+                    && (comparison.upper() == null
+                    || compare(actual, comparison.upper()) instanceof Integer to && to <= 0);
+        };
+    }
+
+    // Sign of actual against expected, or null when they are of unrelated kinds; a comparison
+    // with such a value fails whichever way it is asked.
+    private static Integer compare(Object actual, Object expected) {
+        if (actual instanceof Number number) {
+            Double other = expected instanceof Number n ? Double.valueOf(n.doubleValue()) : parse(expected);
+            return other == null ? null : Double.compare(number.doubleValue(), other);
+        }
+        if (actual instanceof Enum<?> constant) {
+            String other = expected instanceof Enum<?> e ? e.name() : String.valueOf(expected);
+            return constant.name().compareToIgnoreCase(other);
+        }
+        return actual.toString().compareTo(String.valueOf(expected));
+    }
+
+    private static Double parse(Object value) {
+        try {
+            return Double.valueOf(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.debo.hw12.service;
+
+import java.util.List;
+
+public interface AutocompleteService {
+    List<String> suggest(String prefix, int limit);
+
+    void rebuild();
+}
@@ -4,6 +4,7 @@ import com.debo.hw12.enums.Condition;
 import com.debo.hw12.exception.DuplicateEntityException;
 import com.debo.hw12.exception.ValidationException;
 import com.debo.hw12.model.Book;
+import com.debo.hw12.query.Query;
 
 import java.util.*;
 
@@ -14,9 +15,15 @@ public interface BookService {
     Book updateBook(UUID id, String title, String author);
     Book updateBook(UUID id, String title, String author, String publisher, int publicationYear, Set<String> genres, Condition condition) throws ValidationException;
     List<Book> searchBooks(String criteria, String searchTerm);
+    List<Book> fuzzySearch(String query);
+    Optional<Book> findByIsbn(String isbn);
+    List<Book> query(Query query) throws ValidationException;
+    String explain(Query query) throws ValidationException;
 
     Optional<Book> getBookById(UUID id);
 
+    int countAvailableCopies(UUID bookId);
+
     void deleteBook(UUID id);
 
     Collection<Book> getAllBooks();
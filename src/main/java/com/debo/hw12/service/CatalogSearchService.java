@@ -0,0 +1,13 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.model.FacetResult;
+import com.debo.hw12.model.SearchHit;
+
+import java.util.List;
+
+public interface CatalogSearchService {
+    List<SearchHit> search(String query, int limit);
+
+    FacetResult facet(FacetQuery query);
+}
@@ -16,16 +16,24 @@ public interface LoanRecordService {
 
     LoanRecord returnItem(UUID loanId) throws ValidationException, EntityNotFoundException;
 
+    LoanRecord checkoutByBarcode(UUID patronId, String barcode, LocalDateTime dueDate) throws ValidationException, BusinessRuleException;
+
+    LoanRecord returnByBarcode(String barcode) throws ValidationException, EntityNotFoundException;
+
     Reservation reserveItem(UUID patronId, UUID itemId) throws ValidationException, BusinessRuleException;
 
     void cancelReservation(UUID reservationId) throws ValidationException;
 
     void processExpiredReservations();
 
+    void allocateHold(UUID itemCopyId);
+
     List<Reservation> getPatronReservations(UUID patronId);
 
     List<Reservation> getItemReservations(UUID itemId);
 
+    int getQueuePosition(Reservation reservation);
+
     Optional<LoanRecord> getLoanById(UUID loanId);
 
     List<LoanRecord> getActiveLoans();
@@ -36,6 +44,8 @@ public interface LoanRecordService {
 
     List<LoanRecord> getPatronLoanHistory(UUID patronId);
 
+    List<LoanRecord> getCopyLoanHistory(UUID itemCopyId);
+
     double calculateLateFees(UUID loanId) throws EntityNotFoundException;
 
     void processOverdueLoans();
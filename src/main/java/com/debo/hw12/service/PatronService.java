@@ -4,6 +4,7 @@ import com.debo.hw12.exception.BusinessRuleException;
 import com.debo.hw12.exception.DuplicateEntityException;
 import com.debo.hw12.exception.ValidationException;
 import com.debo.hw12.model.Patron;
+import com.debo.hw12.query.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,7 +13,10 @@ import java.util.UUID;
 public interface PatronService {
     Patron registerPatron(String name, String email, String membershipType) throws DuplicateEntityException, ValidationException;
     Optional<Patron> getPatronById(UUID id);
+    Optional<Patron> findByEmail(String email);
     List<Patron> searchPatrons(String searchCriteria, String searchTerm);
+    List<Patron> query(Query query) throws ValidationException;
+    String explain(Query query) throws ValidationException;
     Patron updatePatron(UUID id, String name, String email) throws ValidationException, DuplicateEntityException;
     void deactivatePatron(UUID id) throws ValidationException, BusinessRuleException;
     boolean isPatronEligibleForBorrowing(UUID id);
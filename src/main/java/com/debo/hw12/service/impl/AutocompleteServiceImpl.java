@@ -0,0 +1,84 @@
+package com.debo.hw12.service.impl;
+
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.LoanRecord;
+import com.debo.hw12.service.AutocompleteService;
+import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.SuggestionIndex;
+import com.debo.hw12.util.Logger;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Typeahead over book titles and authors, ranked by how often the books have been lent out.
+// Suggestions come from an immutable SuggestionIndex that is swapped for a fresh one in the
+// background once the catalog has changed or the index is older than the refresh interval;
+// until then queries keep using the old one.
+public class AutocompleteServiceImpl implements AutocompleteService {
+    private static final long REFRESH_MILLIS = Long.getLong("library.autocomplete.refreshMillis", 60_000L);
+
+    private final LibraryState libraryState = LibraryState.getInstance();
+    private final Logger logger = Logger.getInstance();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "library-autocomplete");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private volatile Built current;
+
+    private record Built(SuggestionIndex index, long version, long builtAt) {
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Built built = current;
+        if (built == null) {
+            rebuild();
+            built = current;
+        } else if (isStale(built) && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+        return built.index().complete(prefix, limit);
+    }
+
+    @Override
+    public void rebuild() {
+        long version = libraryState.getBooks().version();
+        Map<UUID, Integer> circulation = new HashMap<>();
+        for (LoanRecord loan : libraryState.getLoans().values()) {
+            ItemCopy copy = loan.getItemCopyId() == null ? null : libraryState.getItemCopies().get(loan.getItemCopyId());
+            if (copy != null && copy.getItemId() != null) {
+                circulation.merge(copy.getItemId(), 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> popularity = new HashMap<>();
+        for (Book book : libraryState.getBooks().values()) {
+            if (book.isActive()) {
+                int count = circulation.getOrDefault(book.getId(), 0);
+                popularity.merge(Objects.requireNonNullElse(book.getTitle(), ""), count, Integer::sum);
+                popularity.merge(Objects.requireNonNullElse(book.getAuthor(), ""), count, Integer::sum);
+            }
+        }
+        SuggestionIndex index = SuggestionIndex.build(popularity);
+        current = new Built(index, version, System.currentTimeMillis());
+        logger.info("Rebuilt autocomplete index with " + index.size() + " suggestions");
+    }
+
+    private boolean isStale(Built built) {
+        return built.version() != libraryState.getBooks().version()
+                || System.currentTimeMillis() - built.builtAt() > REFRESH_MILLIS;
+    }
+}
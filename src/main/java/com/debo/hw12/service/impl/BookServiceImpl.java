@@ -1,11 +1,18 @@
 package com.debo.hw12.service.impl;
 
 import com.debo.hw12.enums.Condition;
+import com.debo.hw12.enums.ItemStatus;
 import com.debo.hw12.exception.DuplicateEntityException;
 import com.debo.hw12.exception.ValidationException;
 import com.debo.hw12.model.Book;
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.query.Query;
+import com.debo.hw12.query.QueryPlan;
+import com.debo.hw12.query.QueryPlanner;
+import com.debo.hw12.query.Schema;
 import com.debo.hw12.service.BookService;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
 import com.debo.hw12.util.Logger;
 
 import java.util.*;
@@ -14,11 +21,21 @@ import java.util.*;
 public class BookServiceImpl implements BookService {
     private final LibraryState libraryState = LibraryState.getInstance();
     private final Logger logger = Logger.getInstance();
+    private final QueryPlanner<Book> planner = new QueryPlanner<>(new Schema<Book>("books")
+            .field("title", Book::getTitle)
+            .field("author", Book::getAuthor)
+            .field("isbn", Book::getIsbn)
+            .field("publisher", Book::getPublisher)
+            .field("description", Book::getDescription)
+            .field("year", Book::getPublicationYear)
+            .field("genre", Book::getGenres)
+            .field("condition", Book::getCondition)
+            .field("active", Book::isActive),
+            () -> libraryState.getBooks().values(), libraryState.getBooks().accessPaths());
 
     @Override
     public Book createBook(String title, String isbn, String author) throws DuplicateEntityException, ValidationException {
         validateBookData(title, isbn, author);
-        validateIsbn(isbn);
 
         Book newBook = Book.builder()
                 .id(UUID.randomUUID())
@@ -29,7 +46,7 @@ public class BookServiceImpl implements BookService {
                 .copies(new ArrayList<>())
                 .build();
 
-        libraryState.getBooks().put(newBook.getId(), newBook);
+        store(newBook);
         logger.info("Created new book:" + newBook.getTitle());
 
         return newBook;
@@ -39,7 +56,6 @@ public class BookServiceImpl implements BookService {
     @Override
     public Book createBook(String title, String isbn, String author, String publisher, String publicationYear, Set<String> genres, String condition) throws DuplicateEntityException, ValidationException {
         validateBookData(title, isbn, author);
-        validateIsbn(isbn);
 
         Book newBook = Book.builder()
                 .id(UUID.randomUUID())
@@ -53,7 +69,7 @@ public class BookServiceImpl implements BookService {
                 .condition(validateCondition(condition))
                 .build();
 
-        libraryState.getBooks().put(newBook.getId(), newBook);
+        store(newBook);
         logger.info("Created new book:" + newBook.getTitle());
 
         return newBook;
@@ -68,12 +84,16 @@ public class BookServiceImpl implements BookService {
         }
     }
 
-    private void validateIsbn(String isbn) throws DuplicateEntityException {
-        boolean isbnExists = libraryState.getBooks().values().stream()
-                .anyMatch(book -> book.getIsbn().equals(isbn));
-
-        if (isbnExists) {
-            throw new DuplicateEntityException("Book with ISBN " + isbn + " already exists");
+    // Claiming the ISBN first makes the duplicate check atomic with the insert.
+    private void store(Book book) throws DuplicateEntityException {
+        if (!libraryState.getBooks().claimIsbn(book.getIsbn(), book.getId())) {
+            throw new DuplicateEntityException("Book with ISBN " + book.getIsbn() + " already exists");
+        }
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(book);
+            libraryState.getBooks().put(book.getId(), book);
+        } finally {
+            libraryState.getBooks().releaseIsbn(book.getIsbn(), book.getId());
         }
     }
 
@@ -84,8 +104,11 @@ public class BookServiceImpl implements BookService {
             throw new IllegalArgumentException("Book not found with ID: " + id);
         }
 
-        book.setTitle(title);
-        book.setAuthor(author);
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(book);
+            book.setTitle(title);
+            book.setAuthor(author);
+        }
         logger.info("Updated book:" + book.getTitle());
 
         return book;
@@ -98,12 +121,15 @@ public class BookServiceImpl implements BookService {
             throw new IllegalArgumentException("Book not found with ID: " + id);
         }
 
-        book.setTitle(title);
-        book.setAuthor(author);
-        book.setPublisher(publisher);
-        book.setPublicationYear(publicationYear);
-        book.setGenres(genres);
-        book.setCondition(condition);
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(book);
+            book.setTitle(title);
+            book.setAuthor(author);
+            book.setPublisher(publisher);
+            book.setPublicationYear(publicationYear);
+            book.setGenres(genres);
+            book.setCondition(condition);
+        }
         logger.info("Updated book:" + book.getTitle());
 
         return book;
@@ -115,14 +141,75 @@ public class BookServiceImpl implements BookService {
             return List.of();
         }
 
+        if (criteria.equalsIgnoreCase("genre")) {
+            return findByGenre(searchTerm.trim());
+        }
+        if (criteria.equalsIgnoreCase("fuzzy")) {
+            return fuzzySearch(searchTerm);
+        }
+
         String normalizedTerm = searchTerm.toLowerCase().trim();
 
-        return libraryState.getBooks().values().stream()
-                .filter(book -> matchesCriteria(book, criteria, normalizedTerm))
+        // Title and author substrings are answered from the trigram indexes.
+        List<Book> matches = switch (criteria.toLowerCase()) {
+            case "title" -> libraryState.getBooks().titleContains(normalizedTerm);
+            case "author" -> libraryState.getBooks().authorContains(normalizedTerm);
+            case "isbn" -> libraryState.getBooks().values().stream()
+                    .filter(book -> book.getIsbn().contains(normalizedTerm))
+                    .toList();
+            default -> List.of();
+        };
+        return matches.stream()
                 .filter(Book::isActive)
                 .toList();
     }
 
+    @Override
+    public List<Book> query(Query query) throws ValidationException {
+        return plan(query).execute();
+    }
+
+    @Override
+    public String explain(Query query) throws ValidationException {
+        return plan(query).explain();
+    }
+
+    // Only active books are ever returned, so that is part of every plan.
+    private QueryPlan<Book> plan(Query query) throws ValidationException {
+        if (query == null) {
+            throw new ValidationException("Query cannot be empty");
+        }
+        planner.getSchema().validate(query);
+        return planner.plan(Query.and(query, Query.equalTo("active", true)));
+    }
+
+    @Override
+    public List<Book> fuzzySearch(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return List.of();
+        }
+        return libraryState.getBooks().fuzzyMatches(query).stream()
+                .filter(Book::isActive)
+                .toList();
+    }
+
+    // Genres are matched exactly, from the genre bitmap of the facet index, which only holds
+    // active books.
+    private List<Book> findByGenre(String genre) {
+        return libraryState.getBooks().findByFacets(FacetQuery.builder().genres(Set.of(genre)).build());
+    }
+
+    @Override
+    public Optional<Book> findByIsbn(String isbn) {
+        return Optional.ofNullable(libraryState.getBooks().findByIsbn(isbn))
+                .filter(Book::isActive);
+    }
+
+    @Override
+    public int countAvailableCopies(UUID bookId) {
+        return libraryState.getItemCopies().countCopies(bookId, ItemStatus.AVAILABLE);
+    }
+
     @Override
     public Optional<Book> getBookById(UUID id) {
         return Optional.ofNullable(libraryState.getBooks().get(id))
@@ -136,7 +223,10 @@ public class BookServiceImpl implements BookService {
             throw new IllegalArgumentException("Book not found with ID: " + id);
         }
 
-        book.setActive(false);
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(book);
+            book.setActive(false);
+        }
         logger.info("Marked book as inactive: " + book.getTitle());
     }
 
@@ -145,15 +235,6 @@ public class BookServiceImpl implements BookService {
         return libraryState.getBooks().values();
     }
 
-    private boolean matchesCriteria(Book book, String criteria, String searchTerm) {
-        return switch (criteria.toLowerCase()) {
-            case "title" -> book.getTitle().toLowerCase().contains(searchTerm);
-            case "author" -> book.getAuthor().toLowerCase().contains(searchTerm);
-            case "isbn" -> book.getIsbn().contains(searchTerm);
-            default -> false;
-        };
-    }
-
     private void validateBookData(String title, String isbn, String author) throws ValidationException {
         if (title == null || title.trim().isEmpty()) {
             throw new ValidationException("Title cannot be empty");
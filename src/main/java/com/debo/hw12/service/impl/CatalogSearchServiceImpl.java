@@ -0,0 +1,30 @@
+package com.debo.hw12.service.impl;
+
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.model.FacetResult;
+import com.debo.hw12.model.SearchHit;
+import com.debo.hw12.service.CatalogSearchService;
+import com.debo.hw12.state.LibraryState;
+
+import java.util.List;
+
+// Relevance-ranked search over title, author, genres, description and publisher of active
+// books, answered from the text index the books table maintains, and faceted filtering answered
+// from the facet bitmaps over books and copies.
+public class CatalogSearchServiceImpl implements CatalogSearchService {
+    private final LibraryState libraryState = LibraryState.getInstance();
+
+    @Override
+    public List<SearchHit> search(String query, int limit) {
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return libraryState.getBooks().rank(query, limit);
+    }
+
+    @Override
+    public FacetResult facet(FacetQuery query) {
+        return libraryState.getBooks().facet(query == null ? FacetQuery.builder().build() : query,
+                libraryState.getItemCopies());
+    }
+}
@@ -0,0 +1,48 @@
+package com.debo.hw12.service.impl;
+
+import com.debo.hw12.model.EpochTime;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Runs a task once the earliest deadline it has been armed with passes. Arming with a later
+// deadline than the one already pending does nothing; an earlier one reschedules the wakeup.
+// Deadlines are EpochTime nanos. All timers share one daemon thread.
+final class DeadlineTimer {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "library-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Runnable task;
+    private ScheduledFuture<?> pending;
+    private long pendingAt = Long.MAX_VALUE;
+
+    DeadlineTimer(Runnable task) {
+        this.task = task;
+    }
+
+    synchronized void arm(long deadline) {
+        if (deadline == EpochTime.NONE || deadline >= pendingAt) {
+            return;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pendingAt = deadline;
+        // One nanosecond past the deadline, as "past due" is strictly after it.
+        long delay = Math.max(0, deadline - EpochTime.now()) + 1;
+        pending = SCHEDULER.schedule(this::fire, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void fire() {
+        synchronized (this) {
+            pending = null;
+            pendingAt = Long.MAX_VALUE;
+        }
+        task.run();
+    }
+}
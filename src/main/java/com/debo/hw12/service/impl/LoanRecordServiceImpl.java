@@ -7,6 +7,7 @@ import com.debo.hw12.enums.ReservationStatus;
 import com.debo.hw12.exception.BusinessRuleException;
 import com.debo.hw12.exception.EntityNotFoundException;
 import com.debo.hw12.exception.ValidationException;
+import com.debo.hw12.model.EpochTime;
 import com.debo.hw12.model.ItemCopy;
 import com.debo.hw12.model.LoanRecord;
 import com.debo.hw12.model.Patron;
@@ -15,22 +16,38 @@ import com.debo.hw12.model.accrual.*;
 import com.debo.hw12.service.LoanRecordService;
 import com.debo.hw12.service.PatronService;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
 import com.debo.hw12.util.Logger;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LoanRecordServiceImpl implements LoanRecordService {
     private static final long RESERVATION_EXPIRY_DAYS = 30;
+    private static final long PICKUP_DAYS = Long.getLong("library.holds.pickupDays", 7L);
     private final LibraryState libraryState = LibraryState.getInstance();
     private final Logger logger = Logger.getInstance();
     private final PatronService patronService;
+    // Wakes overdue processing when the earliest active loan falls due.
+    private final DeadlineTimer overdueTimer = new DeadlineTimer(this::processOverdueLoans);
+    // Wakes the expiry sweep when the earliest reservation or pickup window runs out.
+    private final DeadlineTimer expiryTimer = new DeadlineTimer(this::processExpiredReservations);
+    // Returned copies are handed to waiting patrons off the returning thread.
+    private final ExecutorService allocator = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "library-holds");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public LoanRecordServiceImpl(PatronService patronService) {
         this.patronService = patronService;
+        overdueTimer.arm(libraryState.getLoans().nextDueAt());
+        expiryTimer.arm(libraryState.getReservations().nextExpiryAt());
     }
 
     @Override
@@ -45,16 +62,39 @@ public class LoanRecordServiceImpl implements LoanRecordService {
         ItemCopy itemCopy = Optional.ofNullable(libraryState.getItemCopies().get(itemCopyId))
                 .orElseThrow(() -> new ValidationException("Item copy not found"));
 
-        if (!itemCopy.isAvailable()) {
+        // A held copy goes only to the patron it is set aside for.
+        Reservation hold = itemCopy.getStatus() == ItemStatus.RESERVED
+                ? libraryState.getReservations().heldFor(itemCopyId) : null;
+        if (hold != null && !hold.getPatronId().equals(patronId)) {
+            throw new BusinessRuleException("Item is reserved for another patron");
+        }
+        if (!itemCopy.isAvailable() && hold == null) {
             throw new BusinessRuleException("Item is not available for checkout");
         }
 
         LoanRecord loan = new LoanRecord(itemCopy, patron, dueDate);
         loan.setLateFeeAccrual(createLateFeeAccrual(patron.getType()));
 
-        itemCopy.setStatus(ItemStatus.CHECKED_OUT);
-        patron.getCurrentLoans().add(loan);
-        libraryState.getLoans().put(loan.getId(), loan);
+        // Only the desk whose transition succeeds lends the copy; the others see it taken.
+        ItemStatus from = hold != null ? ItemStatus.RESERVED : ItemStatus.AVAILABLE;
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(itemCopy);
+            if (!itemCopy.transition(from, ItemStatus.CHECKED_OUT)) {
+                throw new BusinessRuleException("Item is not available for checkout");
+            }
+            if (hold != null) {
+                if (hold.getStatus() != ReservationStatus.READY) {
+                    itemCopy.transition(ItemStatus.CHECKED_OUT, ItemStatus.RESERVED);
+                    throw new BusinessRuleException("Hold is no longer ready for pickup");
+                }
+                mutation.touch(hold);
+                hold.setStatus(ReservationStatus.FULFILLED);
+            }
+            mutation.touch(loan);
+            patron.getCurrentLoans().add(loan);
+            libraryState.getLoans().put(loan.getId(), loan);
+        }
+        overdueTimer.arm(loan.getDueAt());
 
         logger.info(String.format("Item %s checked out to patron %s",
                 itemCopyId, patron.getName()));
@@ -67,25 +107,55 @@ public class LoanRecordServiceImpl implements LoanRecordService {
         LoanRecord loan = getLoanById(loanId)
                 .orElseThrow(() -> new EntityNotFoundException("Loan record not found"));
 
-        if (loan.getStatus() != LoanStatus.ACTIVE) {
-            throw new ValidationException("Loan is not active or overdue");
+        // Two desks returning the same loan must not both close it.
+        boolean shelved;
+        synchronized (loan) {
+            if (loan.getStatus() != LoanStatus.ACTIVE) {
+                throw new ValidationException("Loan is not active or overdue");
+            }
+
+            try (Mutation mutation = libraryState.beginMutation()) {
+                mutation.touch(loan);
+                mutation.touch(loan.getItemCopy());
+                loan.setReturnedAt(EpochTime.now());
+                loan.setStatus(LoanStatus.RETURNED);
+                loan.setLateFees(loan.getLateFeeAccrual().calculateLateFee(loan));
+
+                shelved = loan.getItemCopy().transition(ItemStatus.CHECKED_OUT, ItemStatus.AVAILABLE);
+                loan.getPatron().getCurrentLoans().remove(loan);
+                loan.getPatron().getLoanHistory().add(loan);
+            }
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        loan.setReturnDate(now);
-        loan.setStatus(LoanStatus.RETURNED);
-        loan.setLateFees(loan.getLateFeeAccrual().calculateLateFee(loan));
-
-
-        loan.getItemCopy().setStatus(ItemStatus.AVAILABLE);
-        loan.getPatron().getCurrentLoans().remove(loan);
-        loan.getPatron().getLoanHistory().add(loan);
-
         logger.info(String.format("Item returned for loan %s", loanId));
+        UUID itemCopyId = loan.getItemCopyId();
+        // A copy that was not checked out is left in whatever state it is in and not handed on.
+        if (shelved) {
+            allocator.execute(() -> allocateHold(itemCopyId));
+        } else {
+            logger.warn(String.format("Copy %s of loan %s was not checked out; status left as %s",
+                    itemCopyId, loanId, loan.getItemCopy().getStatus()));
+        }
 
         return loan;
     }
 
+    @Override
+    public LoanRecord checkoutByBarcode(UUID patronId, String barcode, LocalDateTime dueDate) throws ValidationException, BusinessRuleException {
+        ItemCopy itemCopy = Optional.ofNullable(libraryState.getItemCopies().findByBarcode(barcode))
+                .orElseThrow(() -> new ValidationException("Item copy not found for barcode " + barcode));
+        return checkoutItem(patronId, itemCopy.getId(), dueDate);
+    }
+
+    @Override
+    public LoanRecord returnByBarcode(String barcode) throws ValidationException, EntityNotFoundException {
+        ItemCopy itemCopy = Optional.ofNullable(libraryState.getItemCopies().findByBarcode(barcode))
+                .orElseThrow(() -> new EntityNotFoundException("Item copy not found for barcode " + barcode));
+        LoanRecord loan = Optional.ofNullable(libraryState.getLoans().activeLoanFor(itemCopy.getId()))
+                .orElseThrow(() -> new ValidationException("Item copy %s is not checked out".formatted(barcode)));
+        return returnItem(loan.getId());
+    }
+
     @Override
     public Reservation reserveItem(UUID patronId, UUID itemCopyId) throws BusinessRuleException, ValidationException {
         Patron patron = patronService.getPatronById(patronId)
@@ -94,27 +164,22 @@ public class LoanRecordServiceImpl implements LoanRecordService {
         ItemCopy itemCopy = Optional.ofNullable(libraryState.getItemCopies().get(itemCopyId))
                 .orElseThrow(() -> new ValidationException("Item not found"));
 
-        boolean hasExistingReservation = libraryState.getReservations().values().stream()
-                .anyMatch(r -> r.getPatron().getId().equals(patronId) &&
-                        r.getItem().getId().equals(itemCopy.getItem().getId()) &&
-                        r.getStatus() == ReservationStatus.PENDING);
-
-        if (hasExistingReservation) {
-            throw new BusinessRuleException("Patron already has an active reservation for this item");
-        }
-
-        List<Reservation> activeReservations = libraryState.getReservations().values().stream()
-                .filter(r -> r.getItem().getId().equals(itemCopy.getItem().getId()))
-                .filter(r -> r.getStatus() == ReservationStatus.PENDING)
-                .toList();
-
-        int queuePosition = activeReservations.size() + 1;
-
         Reservation reservation = new Reservation(itemCopy.getItem(), patron);
         reservation.setExpiryDate(LocalDateTime.now().plusDays(RESERVATION_EXPIRY_DAYS));
-        reservation.setQueuePosition(queuePosition);
 
-        libraryState.getReservations().put(reservation.getId(), reservation);
+        // Taking the place in the item's hold queue makes the duplicate check atomic with the
+        // write; the place is given up again if the write fails.
+        if (!libraryState.getReservations().enqueue(reservation)) {
+            throw new BusinessRuleException("Patron already has an active reservation for this item");
+        }
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(reservation);
+            reservation.setQueuePosition(libraryState.getReservations().positionOf(reservation));
+            libraryState.getReservations().put(reservation.getId(), reservation);
+        } finally {
+            libraryState.getReservations().release(reservation);
+        }
+        expiryTimer.arm(reservation.getExpiresAt());
         logger.info(String.format("Item %s reserved for patron %s", itemCopyId, patron.getName()));
 
         return reservation;
@@ -129,29 +194,83 @@ public class LoanRecordServiceImpl implements LoanRecordService {
             throw new ValidationException("Reservation is not in PENDING status");
         }
 
-        reservation.setStatus(ReservationStatus.CANCELLED);
-        updateReservationQueue(reservation.getItem().getId());
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(reservation);
+            reservation.setStatus(ReservationStatus.CANCELLED);
+        }
         logger.info(String.format("Reservation %s cancelled", reservationId));
     }
 
     @Override
     public void processExpiredReservations() {
-        LocalDateTime now = LocalDateTime.now();
+        long now = EpochTime.now();
 
-        libraryState.getReservations().values().stream()
-                .filter(r -> r.getStatus() == ReservationStatus.PENDING)
-                .filter(r -> now.isAfter(r.getExpiryDate()))
-                .forEach(reservation -> {
+        // Only reservations past their expiry leave the index; their queues close up on commit.
+        // A hold that was not picked up in time frees its copy for the next patron in line.
+        List<Reservation> expired = libraryState.getReservations().takeExpired(now).stream()
+                .filter(r -> r.getStatus() == ReservationStatus.PENDING || r.getStatus() == ReservationStatus.READY)
+                .filter(r -> r.isExpiredAt(now))
+                .toList();
+        List<UUID> released = new ArrayList<>();
+        if (!expired.isEmpty()) {
+            try (Mutation mutation = libraryState.beginMutation()) {
+                for (Reservation reservation : expired) {
+                    ItemCopy held = reservation.getStatus() == ReservationStatus.READY
+                            ? libraryState.getItemCopies().get(reservation.getHeldCopyId()) : null;
+                    mutation.touch(reservation);
                     reservation.setStatus(ReservationStatus.EXPIRED);
-                    updateReservationQueue(reservation.getItem().getId());
-                    logger.info(String.format("Reservation %s expired", reservation.getId()));
-                });
+                    if (held != null) {
+                        mutation.touch(held);
+                        if (held.transition(ItemStatus.RESERVED, ItemStatus.AVAILABLE)) {
+                            released.add(held.getId());
+                        }
+                    }
+                }
+            }
+            expired.forEach(reservation -> logger.info(String.format("Reservation %s expired", reservation.getId())));
+        }
+        released.forEach(copyId -> allocator.execute(() -> allocateHold(copyId)));
+        expiryTimer.arm(libraryState.getReservations().nextExpiryAt());
+    }
+
+    // Sets an available copy aside for the first pending reservation on its book and tells only
+    // that patron. Runs after returns and lapsed pickups; calling it again is harmless.
+    @Override
+    public void allocateHold(UUID itemCopyId) {
+        ItemCopy itemCopy = libraryState.getItemCopies().get(itemCopyId);
+        if (itemCopy == null) {
+            return;
+        }
+        if (!itemCopy.isAvailable() || libraryState.getReservations().nextInLine(itemCopy.getItemId()) == null) {
+            return;
+        }
+        // The copy is claimed first, then the reservation is taken out of the queue, so neither a
+        // desk nor another copy of the book can win either of them at the same time.
+        Reservation reservation;
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(itemCopy);
+            if (!itemCopy.transition(ItemStatus.AVAILABLE, ItemStatus.RESERVED)) {
+                return;
+            }
+            reservation = libraryState.getReservations().pollNextInLine(itemCopy.getItemId());
+            if (reservation == null) {
+                itemCopy.transition(ItemStatus.RESERVED, ItemStatus.AVAILABLE);
+                return;
+            }
+            mutation.touch(reservation);
+            reservation.setStatus(ReservationStatus.READY);
+            reservation.setHeldCopyId(itemCopyId);
+            reservation.setExpiryDate(LocalDateTime.now().plusDays(PICKUP_DAYS));
+        }
+        expiryTimer.arm(reservation.getExpiresAt());
+        logger.info(String.format("Item %s held for reservation %s", itemCopyId, reservation.getId()));
+        libraryState.notifyInventoryChange(itemCopy);
     }
 
     @Override
     public List<Reservation> getPatronReservations(UUID patronId) {
         return libraryState.getReservations().values().stream()
-                .filter(r -> r.getPatron().getId().equals(patronId))
+                .filter(r -> r.getPatronId().equals(patronId))
                 .filter(r -> r.getStatus() == ReservationStatus.PENDING)
                 .toList();
     }
@@ -161,11 +280,12 @@ public class LoanRecordServiceImpl implements LoanRecordService {
         ItemCopy itemCopy = libraryState.getItemCopies().get(itemId);
         if (itemCopy == null) return List.of();
 
-        return libraryState.getReservations().values().stream()
-                .filter(r -> r.getItem().getId().equals(itemCopy.getItem().getId()))
-                .filter(r -> r.getStatus() == ReservationStatus.PENDING)
-                .sorted(Comparator.comparingInt(Reservation::getQueuePosition))
-                .toList();
+        return libraryState.getReservations().pendingFor(itemCopy.getItemId());
+    }
+
+    @Override
+    public int getQueuePosition(Reservation reservation) {
+        return reservation.getQueuePosition();
     }
 
     @Override
@@ -175,32 +295,38 @@ public class LoanRecordServiceImpl implements LoanRecordService {
 
     @Override
     public List<LoanRecord> getActiveLoans() {
-        return libraryState.getLoans().values().stream()
+        return libraryState.getLoans().activeLoans().stream()
                 .filter(loan -> loan.getStatus() == LoanStatus.ACTIVE)
                 .toList();
     }
 
     @Override
     public List<LoanRecord> getOverdueLoans() {
-        LocalDateTime now = LocalDateTime.now();
-        return libraryState.getLoans().values().stream()
+        long now = EpochTime.now();
+        return libraryState.getLoans().overdueLoans(now).stream()
                 .filter(loan -> loan.getStatus() == LoanStatus.ACTIVE)
-                .filter(loan -> now.isAfter(loan.getDueDate()))
                 .toList();
     }
 
     @Override
     public List<LoanRecord> getPatronActiveLoans(UUID patronId) {
-        return libraryState.getLoans().values().stream()
-                .filter(loan -> loan.getPatron().getId().equals(patronId))
+        return libraryState.getLoans().loansOfPatron(patronId).stream()
+                .filter(loan -> patronId.equals(loan.getPatronId()))
                 .filter(loan -> loan.getStatus() == LoanStatus.ACTIVE)
                 .toList();
     }
 
     @Override
     public List<LoanRecord> getPatronLoanHistory(UUID patronId) {
-        return libraryState.getLoans().values().stream()
-                .filter(loan -> loan.getPatron().getId().equals(patronId))
+        return libraryState.getLoans().loansOfPatron(patronId).stream()
+                .filter(loan -> patronId.equals(loan.getPatronId()))
+                .toList();
+    }
+
+    @Override
+    public List<LoanRecord> getCopyLoanHistory(UUID itemCopyId) {
+        return libraryState.getLoans().loansOfCopy(itemCopyId).stream()
+                .filter(loan -> itemCopyId.equals(loan.getItemCopyId()))
                 .toList();
     }
 
@@ -211,27 +337,23 @@ public class LoanRecordServiceImpl implements LoanRecordService {
                 .orElseThrow(() -> new EntityNotFoundException("Loan record not found"));
     }
 
+    // Charges only the loans that fell due since the last run. A loan that stays out is not
+    // revisited: its fee is priced again when it is returned or asked for in calculateLateFees.
     @Override
     public void processOverdueLoans() {
-        LocalDateTime now = LocalDateTime.now();
-
-        getActiveLoans().stream()
-                .filter(loan -> now.isAfter(loan.getDueDate()))
-                .forEach(loan -> {
-                    loan.setLateFees(loan.getLateFeeAccrual().calculateLateFee(loan));
-                    logger.info(String.format("Late fees calculated for loan %s", loan.getId()));
-                });
-    }
-
-    private void updateReservationQueue(UUID itemId) {
-        List<Reservation> activeReservations = libraryState.getReservations().values().stream()
-                .filter(r -> r.getItem().getId().equals(itemId))
-                .filter(r -> r.getStatus() == ReservationStatus.PENDING)
+        List<LoanRecord> due = libraryState.getLoans().takeDue(EpochTime.now()).stream()
+                .filter(loan -> loan.getStatus() == LoanStatus.ACTIVE)
                 .toList();
-
-        for (int i = 0; i < activeReservations.size(); i++) {
-            activeReservations.get(i).setQueuePosition(i + 1);
+        if (!due.isEmpty()) {
+            try (Mutation mutation = libraryState.beginMutation()) {
+                for (LoanRecord loan : due) {
+                    mutation.touch(loan);
+                    loan.setLateFees(loan.getLateFeeAccrual().calculateLateFee(loan));
+                }
+            }
+            due.forEach(loan -> logger.info(String.format("Loan %s became overdue", loan.getId())));
         }
+        overdueTimer.arm(libraryState.getLoans().nextDueAt());
     }
 
     private LateFeeAccrual createLateFeeAccrual(PatronType patronType) {
@@ -5,8 +5,13 @@ import com.debo.hw12.exception.BusinessRuleException;
 import com.debo.hw12.exception.DuplicateEntityException;
 import com.debo.hw12.exception.ValidationException;
 import com.debo.hw12.model.Patron;
+import com.debo.hw12.query.Query;
+import com.debo.hw12.query.QueryPlan;
+import com.debo.hw12.query.QueryPlanner;
+import com.debo.hw12.query.Schema;
 import com.debo.hw12.service.PatronService;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
 import com.debo.hw12.util.Logger;
 
 import java.time.LocalDateTime;
@@ -15,6 +20,13 @@ import java.util.*;
 public class PatronServiceImpl implements PatronService {
     private final LibraryState libraryState = LibraryState.getInstance();
     private final Logger logger = Logger.getInstance();
+    private final QueryPlanner<Patron> planner = new QueryPlanner<>(new Schema<Patron>("patrons")
+            .field("name", Patron::getName)
+            .field("email", Patron::getEmail)
+            .field("type", Patron::getType)
+            .field("registrationDate", Patron::getRegistrationDate)
+            .field("active", Patron::isActive),
+            () -> libraryState.getPatrons().values(), libraryState.getPatrons().accessPaths());
 
     @Override
     public Patron registerPatron(String name, String email, String patronType) throws DuplicateEntityException, ValidationException {
@@ -23,7 +35,7 @@ public class PatronServiceImpl implements PatronService {
         Patron newPatron = Patron.builder()
                 .id(UUID.randomUUID())
                 .name(name)
-                .email(validateUniqueEmail(email))
+                .email(email)
                 .type(validatePatronType(patronType))
                 .registrationDate(LocalDateTime.now())
                 .active(true)
@@ -31,7 +43,13 @@ public class PatronServiceImpl implements PatronService {
                 .loanHistory(new ArrayList<>())
                 .build();
 
-        libraryState.getPatrons().put(newPatron.getId(), newPatron);
+        claimEmail(email, newPatron.getId());
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(newPatron);
+            libraryState.getPatrons().put(newPatron.getId(), newPatron);
+        } finally {
+            libraryState.getPatrons().releaseEmail(email, newPatron.getId());
+        }
         logger.info("Registered new patron: " + newPatron.getName());
         return newPatron;
     }
@@ -48,15 +66,12 @@ public class PatronServiceImpl implements PatronService {
         }
     }
 
-    private String validateUniqueEmail(String email) throws DuplicateEntityException {
-        boolean emailExists = libraryState.getPatrons().values().stream()
-                .filter(Patron::isActive)
-                .anyMatch(patron -> patron.getEmail().equalsIgnoreCase(email));
-
-        if (emailExists) {
+    // Claiming the email in the index makes the duplicate check atomic with the write; the
+    // caller releases the claim once the write has committed or failed.
+    private void claimEmail(String email, UUID patronId) throws DuplicateEntityException {
+        if (!libraryState.getPatrons().claimEmail(email, patronId)) {
             throw new DuplicateEntityException(String.format("Patron email %s already exists", email));
         }
-        return email;
     }
 
     private PatronType validatePatronType(String patronType) throws ValidationException {
@@ -73,6 +88,11 @@ public class PatronServiceImpl implements PatronService {
                 .filter(Patron::isActive);
     }
 
+    @Override
+    public Optional<Patron> findByEmail(String email) {
+        return Optional.ofNullable(libraryState.getPatrons().findByEmail(email));
+    }
+
     @Override
     public List<Patron> searchPatrons(String searchCriteria, String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
@@ -87,6 +107,24 @@ public class PatronServiceImpl implements PatronService {
                 .toList();
     }
 
+    @Override
+    public List<Patron> query(Query query) throws ValidationException {
+        return plan(query).execute();
+    }
+
+    @Override
+    public String explain(Query query) throws ValidationException {
+        return plan(query).explain();
+    }
+
+    private QueryPlan<Patron> plan(Query query) throws ValidationException {
+        if (query == null) {
+            throw new ValidationException("Query cannot be empty");
+        }
+        planner.getSchema().validate(query);
+        return planner.plan(Query.and(query, Query.equalTo("active", true)));
+    }
+
     private boolean matchesCriteria(Patron patron, String criteria, String searchTerm) {
         return switch (criteria.toLowerCase()) {
             case "name" -> patron.getName().toLowerCase().contains(searchTerm);
@@ -103,13 +141,15 @@ public class PatronServiceImpl implements PatronService {
 
         validatePatronData(name, email);
 
-        if (!email.equals(patron.getEmail())) {
-            validateUniqueEmail(email);
+        claimEmail(email, id);
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(patron);
+            patron.setName(name);
+            patron.setEmail(email);
+        } finally {
+            libraryState.getPatrons().releaseEmail(email, id);
         }
 
-        patron.setName(name);
-        patron.setEmail(email);
-
         logger.info("Updated patron: " + patron.getName());
         return patron;
     }
@@ -123,7 +163,10 @@ public class PatronServiceImpl implements PatronService {
             throw new BusinessRuleException("Cannot deactivate patron with active loans");
         }
 
-        patron.setActive(false);
+        try (Mutation mutation = libraryState.beginMutation()) {
+            mutation.touch(patron);
+            patron.setActive(false);
+        }
         logger.info("Deactivated patron: " + patron.getName());
     }
 
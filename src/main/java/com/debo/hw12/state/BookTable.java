@@ -0,0 +1,294 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.Condition;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.model.FacetResult;
+import com.debo.hw12.model.SearchHit;
+import com.debo.hw12.query.AccessPath;
+import com.debo.hw12.query.Query;
+import com.debo.hw12.state.persistence.LazyTable;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// The books table, with an ISBN -> book id index, trigram and typo-tolerant indexes over title
+// and author, a ranked text index and facet bitmaps over the active books.
+// ISBN lookups and claims find a book still in the snapshot through its ISBN section and decode
+// just that book. The other indexes only cover decoded books, so searches through them call
+// completeIndexes, which decodes the rest of the snapshot in bulk the first time.
+// An ISBN can be claimed for a book before the book is stored, which is how creates detect
+// duplicates atomically.
+public class BookTable extends LazyTable<Book> {
+    private final UniqueKeyIndex byIsbn = new UniqueKeyIndex((id, isbn) -> {
+        Book book = peek(id);
+        return book != null && isbn.equals(book.getIsbn());
+    });
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex authors = new TrigramIndex();
+    // Boosts for title, author, genres, description and publisher, in that order.
+    private final TextIndex text = new TextIndex(3.0, 2.0, 1.5, 1.0, 0.5);
+    private final FuzzyIndex fuzzy = new FuzzyIndex();
+    private final AtomicLong version = new AtomicLong();
+    private final FacetIndex facets;
+    private volatile IsbnIndex snapshotIsbns;
+
+    // ISBN -> book id for the books of a mapped snapshot.
+    public interface IsbnIndex {
+        UUID find(String isbn);
+    }
+
+    public BookTable(FacetIndex facets) {
+        super(Book::getId);
+        this.facets = facets;
+    }
+
+    public void attach(Loader loader, IsbnIndex isbns) {
+        attach(loader);
+        this.snapshotIsbns = isbns;
+    }
+
+    // Bumped on every index change, so derived structures can tell when they are stale.
+    public long version() {
+        return version.get();
+    }
+
+    public Book findByIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        faultIsbn(isbn);
+        UUID id = byIsbn.find(isbn);
+        Book book = id == null ? null : get(id);
+        return book != null && isbn.equals(book.getIsbn()) ? book : null;
+    }
+
+    // Books whose lowercased title contains the lowercased term, as String.contains decides.
+    public List<Book> titleContains(String term) {
+        return contains(titles, Book::getTitle, term);
+    }
+
+    public List<Book> authorContains(String term) {
+        return contains(authors, Book::getAuthor, term);
+    }
+
+    private List<Book> contains(TrigramIndex index, Function<Book, String> field, String term) {
+        String normalized = TrigramIndex.normalize(term);
+        Predicate<Book> matches = book -> {
+            String text = TrigramIndex.normalize(field.apply(book));
+            return text != null && text.contains(normalized);
+        };
+        completeIndexes();
+        List<UUID> candidates = index.candidates(normalized);
+        if (candidates == null) {
+            return values().stream().filter(matches).toList();
+        }
+        List<Book> found = new ArrayList<>();
+        for (UUID id : candidates) {
+            Book book = get(id);
+            if (book != null && matches.test(book)) {
+                found.add(book);
+            }
+        }
+        return found;
+    }
+
+    // Books whose title or author words are each within a couple of edits of a query word,
+    // closest first.
+    public List<Book> fuzzyMatches(String query) {
+        completeIndexes();
+        List<Book> found = new ArrayList<>();
+        for (FuzzyIndex.Match match : fuzzy.search(query)) {
+            Book book = get(match.id());
+            if (book != null) {
+                found.add(book);
+            }
+        }
+        return found;
+    }
+
+    // Active books matching every facet filter, with per-facet counts over the matches. Copies
+    // still in the snapshot are decoded first so the copy facets see all of them.
+    public FacetResult facet(FacetQuery query, CopyTable copies) {
+        completeIndexes();
+        copies.completeCopyIndexes();
+        FacetIndex.Selection selection = facets.select(query);
+        List<Book> matches = new ArrayList<>(selection.bookIds().size());
+        for (UUID id : selection.bookIds()) {
+            Book book = get(id);
+            if (book != null) {
+                matches.add(book);
+            }
+        }
+        return new FacetResult(matches, selection.counts());
+    }
+
+    // Indexes the query planner may use: ISBN equality, title and author substrings through the
+    // trigram indexes, and genre, condition and publication year through the facet bitmaps. The
+    // facet bitmaps only hold active books, which is all the book service returns anyway.
+    public List<AccessPath<Book>> accessPaths() {
+        return List.of(
+                new TablePath<Book>("isbn", comparison -> isbnOf(comparison) == null ? -1
+                        : findByIsbn(isbnOf(comparison)) == null ? 0 : 1,
+                        comparison -> Optional.ofNullable(findByIsbn(isbnOf(comparison))).stream().toList()),
+                new TablePath<>("trigram(title)", comparison -> trigramEstimate(titles, "title", comparison),
+                        comparison -> titleContains(comparison.value().toString())),
+                new TablePath<>("trigram(author)", comparison -> trigramEstimate(authors, "author", comparison),
+                        comparison -> authorContains(comparison.value().toString())),
+                new TablePath<>("facet", comparison -> {
+                    FacetQuery query = facetQuery(comparison);
+                    if (query == null) {
+                        return -1;
+                    }
+                    completeIndexes();
+                    return facets.countBooks(query);
+                }, comparison -> findByFacets(facetQuery(comparison))));
+    }
+
+    private static String isbnOf(Query.Comparison comparison) {
+        return comparison.field().equals("isbn") && comparison.operator() == Query.Operator.EQUALS
+                && comparison.value() instanceof String isbn ? isbn : null;
+    }
+
+    private long trigramEstimate(TrigramIndex index, String field, Query.Comparison comparison) {
+        if (!comparison.field().equals(field) || comparison.operator() != Query.Operator.CONTAINS) {
+            return -1;
+        }
+        completeIndexes();
+        return index.estimate(TrigramIndex.normalize(comparison.value().toString()));
+    }
+
+    // The facet filter equivalent to a genre, condition or year comparison, if there is one.
+    private static FacetQuery facetQuery(Query.Comparison comparison) {
+        Object value = comparison.value();
+        Object upper = comparison.upper();
+        return switch (comparison.field()) {
+            case "genre" -> comparison.operator() == Query.Operator.EQUALS && value instanceof String genre
+                    ? FacetQuery.builder().genres(Set.of(genre)).build() : null;
+            case "condition" -> {
+                if (comparison.operator() != Query.Operator.EQUALS) {
+                    yield null;
+                }
+                Condition condition = Arrays.stream(Condition.values())
+                        .filter(candidate -> candidate.name().equalsIgnoreCase(String.valueOf(value)))
+                        .findFirst().orElse(null);
+                yield condition == null ? null : FacetQuery.builder().conditions(Set.of(condition)).build();
+            }
+            case "year" -> {
+                if (comparison.operator() == Query.Operator.EQUALS && value instanceof Number year) {
+                    yield FacetQuery.builder().minYear((int) Math.ceil(year.doubleValue()))
+                            .maxYear((int) Math.floor(year.doubleValue())).build();
+                }
+                if (comparison.operator() == Query.Operator.BETWEEN && (value == null || value instanceof Number)
+                        && (upper == null || upper instanceof Number)) {
+                    yield FacetQuery.builder()
+                            .minYear(value == null ? null : (int) Math.ceil(((Number) value).doubleValue()))
+                            .maxYear(upper == null ? null : (int) Math.floor(((Number) upper).doubleValue()))
+                            .build();
+                }
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
+    // Active books passing the book facet filters, without counts or copy facets.
+    public List<Book> findByFacets(FacetQuery query) {
+        completeIndexes();
+        List<Book> found = new ArrayList<>();
+        for (UUID id : facets.findBooks(query)) {
+            Book book = get(id);
+            if (book != null) {
+                found.add(book);
+            }
+        }
+        return found;
+    }
+
+    public List<SearchHit> rank(String query, int limit) {
+        completeIndexes();
+        List<SearchHit> hits = new ArrayList<>();
+        for (TextIndex.Hit hit : text.top(query, limit)) {
+            Book book = get(hit.id());
+            if (book != null) {
+                hits.add(new SearchHit(book, hit.score()));
+            }
+        }
+        return hits;
+    }
+
+    // Reserves the ISBN for a book that is about to be stored. Returns false if another book
+    // holds it or has claimed it first.
+    public boolean claimIsbn(String isbn, UUID bookId) {
+        faultIsbn(isbn);
+        return byIsbn.claim(isbn, bookId);
+    }
+
+    // Decodes the snapshot book holding the ISBN, which indexes it. A snapshot without an ISBN
+    // section has every pending book decoded instead.
+    private void faultIsbn(String isbn) {
+        IsbnIndex isbns = snapshotIsbns;
+        if (isbns == null) {
+            completeIndexes();
+            return;
+        }
+        UUID id = byIsbn.contains(isbn) ? null : isbns.find(isbn);
+        if (id != null) {
+            get(id);
+        }
+    }
+
+    // Gives up a claim whose book was never stored.
+    public void releaseIsbn(String isbn, UUID bookId) {
+        byIsbn.release(isbn, bookId);
+    }
+
+    @Override
+    protected void index(Book book) {
+        UUID id = book.getId();
+        byIsbn.index(id, book.getIsbn());
+        titles.index(id, book.getTitle());
+        authors.index(id, book.getAuthor());
+        fuzzy.index(id, Stream.of(book.getTitle(), book.getAuthor())
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(" ")));
+        text.index(id, book.isActive() ? new String[]{book.getTitle(), book.getAuthor(),
+                String.join(" ", book.getGenres()), book.getDescription(), book.getPublisher()} : null);
+        facets.indexBook(book);
+        version.incrementAndGet();
+    }
+
+    @Override
+    protected void unindex(UUID id) {
+        byIsbn.remove(id);
+        titles.remove(id);
+        authors.remove(id);
+        fuzzy.remove(id);
+        text.remove(id);
+        facets.removeBook(id);
+        version.incrementAndGet();
+    }
+
+    @Override
+    protected void loadPending() {
+        super.loadPending();
+        snapshotIsbns = null;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        snapshotIsbns = null;
+        byIsbn.clear();
+        titles.clear();
+        authors.clear();
+        fuzzy.clear();
+        text.clear();
+        facets.clearBooks();
+        version.incrementAndGet();
+    }
+}
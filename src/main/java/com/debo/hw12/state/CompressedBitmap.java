@@ -0,0 +1,287 @@
+package com.debo.hw12.state;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Set of non-negative ints split into 65536-wide chunks by their high 16 bits. A chunk holds a
+// sorted char array while it has at most ARRAY_MAX members and a 1024-word bitset once it has
+// more, so sparse and dense sets both stay small and intersections work chunk by chunk.
+// Not thread-safe; FacetIndex guards its bitmaps.
+public final class CompressedBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size;
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = find(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new Chunk());
+        }
+        chunks[index].add((char) value);
+    }
+
+    public void remove(int value) {
+        int index = find((char) (value >>> 16));
+        if (index >= 0) {
+            chunks[index].remove((char) value);
+            if (chunks[index].cardinality == 0) {
+                removeChunk(index);
+            }
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = find((char) (value >>> 16));
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = chunks[i].and(other.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    result.insertChunk(result.size, keys[i], chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insertChunk(result.size, keys[i], chunks[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insertChunk(result.size, other.keys[j], other.chunks[j].copy());
+                j++;
+            } else {
+                result.insertChunk(result.size, keys[i], chunks[i].or(other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += chunks[i].and(other.chunks[j]).cardinality;
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            result.insertChunk(i, keys[i], chunks[i].copy());
+        }
+        return result;
+    }
+
+    // Members in ascending order.
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertChunk(int index, char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, size - index - 1);
+        chunks[--size] = null;
+    }
+
+    // Either a sorted array (bits == null) or a bitset (array == null).
+    private static final class Chunk {
+        private char[] array = new char[4];
+        private long[] bits;
+        private int cardinality;
+
+        void add(char value) {
+            if (bits != null) {
+                long mask = 1L << value;
+                if ((bits[value >>> 6] & mask) == 0) {
+                    bits[value >>> 6] |= mask;
+                    cardinality++;
+                }
+                return;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(cardinality * 2, ARRAY_MAX + 1));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = value;
+            cardinality++;
+            if (cardinality > ARRAY_MAX) {
+                toBits();
+            }
+        }
+
+        void remove(char value) {
+            if (bits != null) {
+                long mask = 1L << value;
+                if ((bits[value >>> 6] & mask) != 0) {
+                    bits[value >>> 6] &= ~mask;
+                    cardinality--;
+                    if (cardinality <= ARRAY_MAX) {
+                        toArray();
+                    }
+                }
+                return;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+                cardinality--;
+            }
+        }
+
+        boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        Chunk and(Chunk other) {
+            Chunk result = new Chunk();
+            if (bits != null && other.bits != null) {
+                result.array = null;
+                result.bits = new long[WORDS];
+                for (int i = 0; i < WORDS; i++) {
+                    result.bits[i] = bits[i] & other.bits[i];
+                    result.cardinality += Long.bitCount(result.bits[i]);
+                }
+                if (result.cardinality <= ARRAY_MAX) {
+                    result.toArray();
+                }
+                return result;
+            }
+            Chunk sparse = bits == null ? this : other;
+            Chunk dense = sparse == this ? other : this;
+            result.array = new char[Math.max(4, sparse.cardinality)];
+            for (int i = 0; i < sparse.cardinality; i++) {
+                if (dense.contains(sparse.array[i])) {
+                    result.array[result.cardinality++] = sparse.array[i];
+                }
+            }
+            return result;
+        }
+
+        Chunk or(Chunk other) {
+            // Start from the bitset side, if there is one, and add the other side's members.
+            boolean otherDense = other.bits != null && bits == null;
+            Chunk result = otherDense ? other.copy() : copy();
+            (otherDense ? this : other).forEach(0, value -> result.add((char) value));
+            return result;
+        }
+
+        Chunk copy() {
+            Chunk result = new Chunk();
+            result.array = array == null ? null : array.clone();
+            result.bits = bits == null ? null : bits.clone();
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        void forEach(int base, IntConsumer action) {
+            if (bits == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(base | array[i]);
+                }
+                return;
+            }
+            for (int word = 0; word < WORDS; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    action.accept(base | (word << 6) + Long.numberOfTrailingZeros(remaining));
+                    remaining &= remaining - 1;
+                }
+            }
+        }
+
+        private void toBits() {
+            bits = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int count = 0;
+            for (int word = 0; word < WORDS; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    values[count++] = (char) ((word << 6) + Long.numberOfTrailingZeros(remaining));
+                    remaining &= remaining - 1;
+                }
+            }
+            array = values;
+            bits = null;
+        }
+    }
+}
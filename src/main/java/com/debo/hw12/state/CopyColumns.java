@@ -0,0 +1,203 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.state.persistence.StringDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// Struct-of-arrays copy of the fields availability and shelf queries look at: one row per copy
+// holding its status ordinal, the ordinal of its book and the dictionary id of its location.
+// Rows are packed; removing one moves the last row into its place. Per-(book, status) and
+// per-status tallies are kept alongside the rows so counting never scans them.
+public class CopyColumns {
+    private static final int STATUSES = ItemStatus.values().length;
+    private static final byte NO_STATUS = -1;
+    private static final int NO_BOOK = -1;
+    private static final int NO_LOCATION = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final UuidMap<Integer> rows = new UuidMap<>();
+    private final UuidMap<Integer> bookOrdinals = new UuidMap<>();
+    private final StringDictionary locations = new StringDictionary();
+
+    private long[] copyMsbs = new long[64];
+    private long[] copyLsbs = new long[64];
+    private byte[] statuses = new byte[64];
+    private int[] books = new int[64];
+    private int[] locationIds = new int[64];
+    private int[] bookStatusCounts = new int[64 * STATUSES];
+    private final int[] statusTotals = new int[STATUSES];
+    private int size;
+
+    public void update(ItemCopy copy) {
+        byte status = copy.getStatus() == null ? NO_STATUS : (byte) copy.getStatus().ordinal();
+        int location = copy.getLocation() == null ? NO_LOCATION : locations.add(copy.getLocation());
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(copy.getId());
+            if (row == null) {
+                row = size++;
+                grow();
+                rows.put(copy.getId(), row);
+                copyMsbs[row] = copy.getId().getMostSignificantBits();
+                copyLsbs[row] = copy.getId().getLeastSignificantBits();
+            } else {
+                tally(books[row], statuses[row], -1);
+            }
+            statuses[row] = status;
+            books[row] = bookOrdinal(copy.getItemId());
+            locationIds[row] = location;
+            tally(books[row], status, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID copyId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(copyId);
+            if (row == null) {
+                return;
+            }
+            tally(books[row], statuses[row], -1);
+            int last = --size;
+            if (row != last) {
+                copyMsbs[row] = copyMsbs[last];
+                copyLsbs[row] = copyLsbs[last];
+                statuses[row] = statuses[last];
+                books[row] = books[last];
+                locationIds[row] = locationIds[last];
+                rows.put(new UUID(copyMsbs[row], copyLsbs[row]), row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rows.clear();
+            size = 0;
+            Arrays.fill(bookStatusCounts, 0);
+            Arrays.fill(statusTotals, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int count(UUID bookId, ItemStatus status) {
+        Integer ordinal = bookOrdinals.get(bookId);
+        if (ordinal == null) {
+            return 0;
+        }
+        int slot = ordinal * STATUSES + status.ordinal();
+        lock.readLock().lock();
+        try {
+            return slot < bookStatusCounts.length ? bookStatusCounts[slot] : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copies in the given status whose location matches, optionally restricted to one book.
+    // The location predicate runs once per distinct location, not once per copy.
+    public List<UUID> find(UUID bookId, ItemStatus status, Predicate<String> location) {
+        int book = NO_BOOK;
+        if (bookId != null) {
+            Integer ordinal = bookOrdinals.get(bookId);
+            if (ordinal == null) {
+                return List.of();
+            }
+            book = ordinal;
+        }
+        byte wanted = (byte) status.ordinal();
+        boolean[] locationMatches = location == null ? null : matchLocations(location);
+        List<UUID> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (statuses[row] == wanted
+                        && (book == NO_BOOK || books[row] == book)
+                        && (locationMatches == null || matches(locationMatches, locationIds[row]))) {
+                    found.add(new UUID(copyMsbs[row], copyLsbs[row]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    // Number of copies in each status, indexed by ItemStatus ordinal.
+    public int[] statusCounts() {
+        lock.readLock().lock();
+        try {
+            return statusTotals.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean[] matchLocations(Predicate<String> location) {
+        int known = locations.size();
+        boolean[] matches = new boolean[known];
+        for (int id = 0; id < known; id++) {
+            matches[id] = location.test(locations.get(id));
+        }
+        return matches;
+    }
+
+    // Locations added after the predicate ran are treated as non-matching.
+    private static boolean matches(boolean[] locationMatches, int location) {
+        return location != NO_LOCATION && location < locationMatches.length && locationMatches[location];
+    }
+
+    private int bookOrdinal(UUID bookId) {
+        if (bookId == null) {
+            return NO_BOOK;
+        }
+        Integer ordinal = bookOrdinals.get(bookId);
+        if (ordinal == null) {
+            ordinal = bookOrdinals.size();
+            bookOrdinals.put(bookId, ordinal);
+        }
+        return ordinal;
+    }
+
+    // Called with the write lock held.
+    private void tally(int book, byte status, int delta) {
+        if (status == NO_STATUS) {
+            return;
+        }
+        statusTotals[status] += delta;
+        if (book == NO_BOOK) {
+            return;
+        }
+        int slot = book * STATUSES + status;
+        if (slot >= bookStatusCounts.length) {
+            bookStatusCounts = Arrays.copyOf(bookStatusCounts, Math.max(slot + 1, bookStatusCounts.length * 2));
+        }
+        bookStatusCounts[slot] += delta;
+    }
+
+    private void grow() {
+        if (size <= statuses.length) {
+            return;
+        }
+        int capacity = statuses.length * 2;
+        copyMsbs = Arrays.copyOf(copyMsbs, capacity);
+        copyLsbs = Arrays.copyOf(copyLsbs, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        books = Arrays.copyOf(books, capacity);
+        locationIds = Arrays.copyOf(locationIds, capacity);
+    }
+}
@@ -0,0 +1,127 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.state.persistence.LazyTable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+// The itemCopies table. With columns enabled it mirrors every entry into CopyColumns so that
+// availability and shelf queries scan packed arrays instead of copy objects; either way it
+// feeds the type and status facet bitmaps and a barcode -> copy id index.
+public class CopyTable extends LazyTable<ItemCopy> {
+    private final CopyColumns columns;
+    private final FacetIndex facets;
+    private final ConcurrentHashMap<String, UUID> byBarcode = new ConcurrentHashMap<>();
+    private final UuidMap<String> barcodeOf = new UuidMap<>();
+
+    public CopyTable(boolean columnar, FacetIndex facets) {
+        super(ItemCopy::getId);
+        this.columns = columnar ? new CopyColumns() : null;
+        this.facets = facets;
+    }
+
+    public ItemCopy findByBarcode(String barcode) {
+        if (barcode == null) {
+            return null;
+        }
+        completeIndexes();
+        UUID id = byBarcode.get(barcode.trim());
+        ItemCopy copy = id == null ? null : get(id);
+        return copy != null && barcode.trim().equals(copy.getBarcode()) ? copy : null;
+    }
+
+    void completeCopyIndexes() {
+        completeIndexes();
+    }
+
+    public int countCopies(UUID bookId, ItemStatus status) {
+        if (columns == null) {
+            return (int) values().stream()
+                    .filter(copy -> Objects.equals(copy.getItemId(), bookId))
+                    .filter(copy -> copy.getStatus() == status)
+                    .count();
+        }
+        completeIndexes();
+        return columns.count(bookId, status);
+    }
+
+    // Copies in the given status, of one book when bookId is set, whose location matches.
+    public List<ItemCopy> findCopies(UUID bookId, ItemStatus status, Predicate<String> location) {
+        if (columns == null) {
+            return values().stream()
+                    .filter(copy -> bookId == null || bookId.equals(copy.getItemId()))
+                    .filter(copy -> copy.getStatus() == status)
+                    .filter(copy -> location == null || (copy.getLocation() != null && location.test(copy.getLocation())))
+                    .toList();
+        }
+        completeIndexes();
+        List<ItemCopy> found = new ArrayList<>();
+        for (UUID id : columns.find(bookId, status, location)) {
+            ItemCopy copy = get(id);
+            if (copy != null) {
+                found.add(copy);
+            }
+        }
+        return found;
+    }
+
+    public Map<ItemStatus, Integer> statusCounts() {
+        Map<ItemStatus, Integer> counts = new EnumMap<>(ItemStatus.class);
+        if (columns == null) {
+            values().stream()
+                    .filter(copy -> copy.getStatus() != null)
+                    .forEach(copy -> counts.merge(copy.getStatus(), 1, Integer::sum));
+            return counts;
+        }
+        completeIndexes();
+        int[] byOrdinal = columns.statusCounts();
+        for (ItemStatus status : ItemStatus.values()) {
+            if (byOrdinal[status.ordinal()] > 0) {
+                counts.put(status, byOrdinal[status.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (columns != null) {
+            columns.clear();
+        }
+        facets.clearCopies();
+        byBarcode.clear();
+        barcodeOf.clear();
+    }
+
+    @Override
+    protected void index(ItemCopy copy) {
+        if (columns != null) {
+            columns.update(copy);
+        }
+        facets.indexCopy(copy);
+        String barcode = copy.getBarcode();
+        String previous = barcode == null ? barcodeOf.remove(copy.getId()) : barcodeOf.put(copy.getId(), barcode);
+        if (previous != null && !previous.equals(barcode)) {
+            byBarcode.remove(previous, copy.getId());
+        }
+        if (barcode != null) {
+            byBarcode.put(barcode, copy.getId());
+        }
+    }
+
+    @Override
+    protected void unindex(UUID id) {
+        if (columns != null) {
+            columns.remove(id);
+        }
+        facets.removeCopy(id);
+        String previous = barcodeOf.remove(id);
+        if (previous != null) {
+            byBarcode.remove(previous, id);
+        }
+    }
+}
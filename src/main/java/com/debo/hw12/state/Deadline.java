@@ -0,0 +1,20 @@
+package com.debo.hw12.state;
+
+import java.util.UUID;
+
+// An entity waiting in a time-ordered set until `at` (EpochTime nanos) passes. Ties are broken by
+// id, so every entity has its own entry.
+record Deadline(long at, UUID id) implements Comparable<Deadline> {
+    private static final UUID LOWEST = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    // Sorts before every entry due at `at`, so a head set up to it holds those due earlier.
+    static Deadline before(long at) {
+        return new Deadline(at, LOWEST);
+    }
+
+    @Override
+    public int compareTo(Deadline other) {
+        int cmp = Long.compare(at, other.at);
+        return cmp != 0 ? cmp : id.compareTo(other.id);
+    }
+}
@@ -0,0 +1,313 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.Condition;
+import com.debo.hw12.enums.Facet;
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.enums.ItemType;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.TermDictionary;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Compressed bitmaps per facet value over active books (genre, condition, publication year)
+// and over copies (type, status). Books and copies are numbered with ordinals that are never
+// reused, and each copy remembers its book's ordinal so copy filters can be turned into a set
+// of books. The books and copies tables feed it from the same hooks as their other indexes.
+public class FacetIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final UuidMap<Integer> bookOrdinals = new UuidMap<>();
+    private final List<UUID> bookIds = new ArrayList<>();
+    private final List<BookFacets> bookFacets = new ArrayList<>();
+    private final UuidMap<Integer> copyOrdinals = new UuidMap<>();
+    private final List<CopyFacets> copyFacets = new ArrayList<>();
+    private int[] copyBooks = new int[64];
+
+    private CompressedBitmap books = new CompressedBitmap();
+    private CompressedBitmap copies = new CompressedBitmap();
+    private final Map<Integer, CompressedBitmap> byGenre = new HashMap<>();
+    private final Map<Condition, CompressedBitmap> byCondition = new EnumMap<>(Condition.class);
+    private final TreeMap<Integer, CompressedBitmap> byYear = new TreeMap<>();
+    private final Map<ItemType, CompressedBitmap> byType = new EnumMap<>(ItemType.class);
+    private final Map<ItemStatus, CompressedBitmap> byStatus = new EnumMap<>(ItemStatus.class);
+
+    private record BookFacets(int[] genres, Condition condition, int year) {
+    }
+
+    private record CopyFacets(ItemType type, ItemStatus status) {
+    }
+
+    public record Selection(List<UUID> bookIds, Map<Facet, Map<String, Integer>> counts) {
+    }
+
+    // Inactive books are dropped from every bitmap.
+    public void indexBook(Book book) {
+        if (book.getId() == null) {
+            return;
+        }
+        BookFacets facets = null;
+        if (book.isActive()) {
+            int[] genres = book.getGenres().stream()
+                    .mapToInt(genre -> TermDictionary.genres().idOf(genre))
+                    .filter(id -> id >= 0)
+                    .toArray();
+            facets = new BookFacets(genres, book.getCondition(), book.getPublicationYear());
+        }
+        lock.writeLock().lock();
+        try {
+            int ordinal = bookOrdinal(book.getId());
+            unindexBook(ordinal);
+            if (facets != null) {
+                for (int genre : facets.genres()) {
+                    byGenre.computeIfAbsent(genre, key -> new CompressedBitmap()).add(ordinal);
+                }
+                if (facets.condition() != null) {
+                    byCondition.computeIfAbsent(facets.condition(), key -> new CompressedBitmap()).add(ordinal);
+                }
+                byYear.computeIfAbsent(facets.year(), key -> new CompressedBitmap()).add(ordinal);
+                books.add(ordinal);
+                bookFacets.set(ordinal, facets);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeBook(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = bookOrdinals.get(id);
+            if (ordinal != null) {
+                unindexBook(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clearBooks() {
+        lock.writeLock().lock();
+        try {
+            books = new CompressedBitmap();
+            byGenre.clear();
+            byCondition.clear();
+            byYear.clear();
+            Collections.fill(bookFacets, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexCopy(ItemCopy copy) {
+        if (copy.getId() == null) {
+            return;
+        }
+        CopyFacets facets = new CopyFacets(copy.getType(), copy.getStatus());
+        lock.writeLock().lock();
+        try {
+            int ordinal = copyOrdinal(copy.getId());
+            unindexCopy(ordinal);
+            copyBooks[ordinal] = copy.getItemId() == null ? -1 : bookOrdinal(copy.getItemId());
+            if (facets.type() != null) {
+                byType.computeIfAbsent(facets.type(), key -> new CompressedBitmap()).add(ordinal);
+            }
+            if (facets.status() != null) {
+                byStatus.computeIfAbsent(facets.status(), key -> new CompressedBitmap()).add(ordinal);
+            }
+            copies.add(ordinal);
+            copyFacets.set(ordinal, facets);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeCopy(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = copyOrdinals.get(id);
+            if (ordinal != null) {
+                unindexCopy(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clearCopies() {
+        lock.writeLock().lock();
+        try {
+            copies = new CompressedBitmap();
+            byType.clear();
+            byStatus.clear();
+            Collections.fill(copyFacets, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Number of active books passing the book facet filters (genre, condition and year).
+    public int countBooks(FacetQuery query) {
+        lock.readLock().lock();
+        try {
+            return matchBooks(query).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of the active books passing the book facet filters.
+    public List<UUID> findBooks(FacetQuery query) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap matched = matchBooks(query);
+            List<UUID> ids = new ArrayList<>(matched.cardinality());
+            matched.forEach(book -> ids.add(bookIds.get(book)));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Selection select(FacetQuery query) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap matched = matchBooks(query);
+            CompressedBitmap matchedCopies = copies;
+            if (!query.getTypes().isEmpty()) {
+                matchedCopies = matchedCopies.and(union(query.getTypes().stream().map(byType::get)));
+            }
+            if (!query.getStatuses().isEmpty()) {
+                matchedCopies = matchedCopies.and(union(query.getStatuses().stream().map(byStatus::get)));
+            }
+            if (!query.getTypes().isEmpty() || !query.getStatuses().isEmpty()) {
+                CompressedBitmap owners = new CompressedBitmap();
+                matchedCopies.forEach(copy -> {
+                    if (copyBooks[copy] >= 0) {
+                        owners.add(copyBooks[copy]);
+                    }
+                });
+                matched = matched.and(owners);
+            }
+            CompressedBitmap resultBooks = matched;
+            CompressedBitmap resultCopies = new CompressedBitmap();
+            matchedCopies.forEach(copy -> {
+                if (copyBooks[copy] >= 0 && resultBooks.contains(copyBooks[copy])) {
+                    resultCopies.add(copy);
+                }
+            });
+
+            Map<Facet, Map<String, Integer>> counts = new EnumMap<>(Facet.class);
+            counts.put(Facet.GENRE, count(byGenre, resultBooks, genre -> TermDictionary.genres().get(genre)));
+            counts.put(Facet.CONDITION, count(byCondition, resultBooks, Condition::name));
+            counts.put(Facet.YEAR, count(byYear, resultBooks, String::valueOf));
+            counts.put(Facet.TYPE, count(byType, resultCopies, ItemType::name));
+            counts.put(Facet.STATUS, count(byStatus, resultCopies, ItemStatus::name));
+
+            List<UUID> ids = new ArrayList<>(resultBooks.cardinality());
+            resultBooks.forEach(book -> ids.add(bookIds.get(book)));
+            return new Selection(ids, counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private CompressedBitmap matchBooks(FacetQuery query) {
+        CompressedBitmap matched = books;
+        if (!query.getGenres().isEmpty()) {
+            matched = matched.and(union(query.getGenres().stream()
+                    .map(genre -> byGenre.get(TermDictionary.genres().idOf(genre)))));
+        }
+        if (!query.getConditions().isEmpty()) {
+            matched = matched.and(union(query.getConditions().stream().map(byCondition::get)));
+        }
+        if (query.getMinYear() != null || query.getMaxYear() != null) {
+            int from = query.getMinYear() == null ? Integer.MIN_VALUE : query.getMinYear();
+            int to = query.getMaxYear() == null ? Integer.MAX_VALUE : query.getMaxYear();
+            matched = from > to ? new CompressedBitmap()
+                    : matched.and(union(byYear.subMap(from, true, to, true).values().stream()));
+        }
+        return matched;
+    }
+
+    private static <K> Map<String, Integer> count(Map<K, CompressedBitmap> bitmaps, CompressedBitmap within,
+                                                  Function<K, String> name) {
+        Map<String, Integer> counts = new TreeMap<>();
+        bitmaps.forEach((value, bitmap) -> {
+            int count = bitmap.andCardinality(within);
+            if (count > 0) {
+                counts.put(name.apply(value), count);
+            }
+        });
+        return counts;
+    }
+
+    private static CompressedBitmap union(Stream<CompressedBitmap> bitmaps) {
+        return bitmaps.filter(Objects::nonNull).reduce(new CompressedBitmap(), CompressedBitmap::or);
+    }
+
+    private void unindexBook(int ordinal) {
+        BookFacets previous = bookFacets.get(ordinal);
+        if (previous == null) {
+            return;
+        }
+        for (int genre : previous.genres()) {
+            removeFrom(byGenre, genre, ordinal);
+        }
+        removeFrom(byCondition, previous.condition(), ordinal);
+        removeFrom(byYear, previous.year(), ordinal);
+        books.remove(ordinal);
+        bookFacets.set(ordinal, null);
+    }
+
+    private void unindexCopy(int ordinal) {
+        CopyFacets previous = copyFacets.get(ordinal);
+        if (previous == null) {
+            return;
+        }
+        removeFrom(byType, previous.type(), ordinal);
+        removeFrom(byStatus, previous.status(), ordinal);
+        copies.remove(ordinal);
+        copyFacets.set(ordinal, null);
+    }
+
+    private static <K> void removeFrom(Map<K, CompressedBitmap> bitmaps, K key, int ordinal) {
+        CompressedBitmap bitmap = key == null ? null : bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private int bookOrdinal(UUID id) {
+        Integer ordinal = bookOrdinals.get(id);
+        if (ordinal == null) {
+            ordinal = bookIds.size();
+            bookOrdinals.put(id, ordinal);
+            bookIds.add(id);
+            bookFacets.add(null);
+        }
+        return ordinal;
+    }
+
+    private int copyOrdinal(UUID id) {
+        Integer ordinal = copyOrdinals.get(id);
+        if (ordinal == null) {
+            ordinal = copyFacets.size();
+            copyOrdinals.put(id, ordinal);
+            copyFacets.add(null);
+            if (ordinal == copyBooks.length) {
+                copyBooks = Arrays.copyOf(copyBooks, ordinal * 2);
+            }
+            copyBooks[ordinal] = -1;
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,200 @@
+package com.debo.hw12.state;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Typo-tolerant term lookup by symmetric deletes. Every distinct indexed term is registered
+// under each string obtained by deleting up to MAX_EDITS of its characters; a query term is
+// expanded the same way, so two terms within that many edits always share a variant. The
+// few terms found that way are then checked with a bounded edit distance, which counts an
+// adjacent transposition as one edit ("knuht" -> "knuth").
+class FuzzyIndex {
+    static final int MAX_EDITS = 2;
+
+    // term -> ids of the documents holding it
+    private final ConcurrentHashMap<String, Set<UUID>> postings = new ConcurrentHashMap<>();
+    // deletion variant -> terms it was derived from
+    private final ConcurrentHashMap<String, Set<String>> variants = new ConcurrentHashMap<>();
+    private final UuidMap<Set<String>> documents = new UuidMap<>();
+    private final Object[] locks = new Object[64];
+
+    record Match(UUID id, int distance) {
+    }
+
+    FuzzyIndex() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Edits allowed for a query term: one for short terms, two otherwise.
+    static int allowedEdits(String term) {
+        return term.length() <= 4 ? 1 : MAX_EDITS;
+    }
+
+    void index(UUID id, String text) {
+        Set<String> terms = text == null ? null : new HashSet<>(TextIndex.tokenize(text));
+        synchronized (lockFor(id)) {
+            Set<String> previous = terms == null ? documents.remove(id) : documents.put(id, terms);
+            if (previous != null) {
+                for (String term : previous) {
+                    if (terms == null || !terms.contains(term)) {
+                        removeTerm(term, id);
+                    }
+                }
+            }
+            if (terms != null) {
+                for (String term : terms) {
+                    if (previous == null || !previous.contains(term)) {
+                        addTerm(term, id);
+                    }
+                }
+            }
+        }
+    }
+
+    void remove(UUID id) {
+        index(id, null);
+    }
+
+    void clear() {
+        postings.clear();
+        variants.clear();
+        documents.clear();
+    }
+
+    // Documents in which every query term is within its allowed edits of some term, with the
+    // sum over query terms of the closest distance found.
+    List<Match> search(String query) {
+        List<String> queryTerms = TextIndex.tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, Integer> distances = null;
+        for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+            Map<UUID, Integer> closest = new HashMap<>();
+            int allowed = allowedEdits(queryTerm);
+            Set<String> checked = new HashSet<>();
+            for (String variant : deletions(queryTerm, allowed)) {
+                for (String term : variants.getOrDefault(variant, Set.of())) {
+                    if (!checked.add(term)) {
+                        continue;
+                    }
+                    int distance = distance(queryTerm, term, allowed);
+                    if (distance <= allowed) {
+                        for (UUID id : postings.getOrDefault(term, Set.of())) {
+                            closest.merge(id, distance, Math::min);
+                        }
+                    }
+                }
+            }
+            if (distances == null) {
+                distances = closest;
+            } else {
+                Map<UUID, Integer> previous = distances;
+                distances = new HashMap<>();
+                for (Map.Entry<UUID, Integer> entry : closest.entrySet()) {
+                    Integer sofar = previous.get(entry.getKey());
+                    if (sofar != null) {
+                        distances.put(entry.getKey(), sofar + entry.getValue());
+                    }
+                }
+            }
+            if (distances.isEmpty()) {
+                return List.of();
+            }
+        }
+        List<Match> matches = new ArrayList<>();
+        distances.forEach((id, distance) -> matches.add(new Match(id, distance)));
+        matches.sort(Comparator.comparingInt(Match::distance));
+        return matches;
+    }
+
+    private void addTerm(String term, UUID id) {
+        postings.compute(term, (key, ids) -> {
+            Set<UUID> updated = ids;
+            if (updated == null) {
+                updated = ConcurrentHashMap.newKeySet();
+                for (String variant : deletions(term, MAX_EDITS)) {
+                    variants.computeIfAbsent(variant, v -> ConcurrentHashMap.newKeySet()).add(term);
+                }
+            }
+            updated.add(id);
+            return updated;
+        });
+    }
+
+    private void removeTerm(String term, UUID id) {
+        postings.computeIfPresent(term, (key, ids) -> {
+            ids.remove(id);
+            if (!ids.isEmpty()) {
+                return ids;
+            }
+            for (String variant : deletions(term, MAX_EDITS)) {
+                variants.computeIfPresent(variant, (v, terms) -> {
+                    terms.remove(term);
+                    return terms.isEmpty() ? null : terms;
+                });
+            }
+            return null;
+        });
+    }
+
+    // The term itself and every string made by deleting up to `edits` of its characters.
+    static Set<String> deletions(String term, int edits) {
+        Set<String> result = new HashSet<>();
+        result.add(term);
+        Set<String> frontier = Set.of(term);
+        for (int round = 0; round < edits; round++) {
+            Set<String> next = new HashSet<>();
+            for (String word : frontier) {
+                for (int i = 0; i < word.length(); i++) {
+                    String deleted = word.substring(0, i) + word.substring(i + 1);
+                    if (result.add(deleted)) {
+                        next.add(deleted);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return result;
+    }
+
+    // Optimal string alignment distance, giving up with limit + 1 once it is exceeded.
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] before = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, before[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+}
@@ -0,0 +1,190 @@
+package com.debo.hw12.state;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+// One item's pending reservations in queue order: by reservation time, then id. A treap whose
+// nodes count their subtree, so adding, removing and finding a reservation's position are all
+// O(log n) and positions never have to be rewritten. A patron holds at most one place. Each
+// queue locks itself, so reservations for different items do not contend.
+final class HoldQueue {
+    private static final class Node {
+        final long at;
+        final UUID id;
+        final UUID patronId;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long at, UUID id, UUID patronId) {
+            this.at = at;
+            this.id = id;
+            this.patronId = patronId;
+        }
+
+        int compareTo(long otherAt, UUID otherId) {
+            int cmp = Long.compare(at, otherAt);
+            return cmp != 0 ? cmp : id.compareTo(otherId);
+        }
+    }
+
+    private Node root;
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private final Map<UUID, UUID> placeOf = new HashMap<>();
+
+    // Queues the reservation unless its patron already holds a place under another one.
+    synchronized boolean offer(UUID id, UUID patronId, long at) {
+        UUID holder = patronId == null ? null : placeOf.get(patronId);
+        if (holder != null && !holder.equals(id)) {
+            return false;
+        }
+        add(id, patronId, at);
+        return true;
+    }
+
+    // Queues or re-queues the reservation as stored, whoever else its patron holds.
+    synchronized void add(UUID id, UUID patronId, long at) {
+        Node existing = nodes.get(id);
+        if (existing != null) {
+            if (existing.at == at && Objects.equals(existing.patronId, patronId)) {
+                return;
+            }
+            remove(id);
+        }
+        Node node = new Node(at, id, patronId);
+        nodes.put(id, node);
+        if (patronId != null) {
+            placeOf.put(patronId, id);
+        }
+        Node[] parts = split(root, at, id);
+        root = merge(merge(parts[0], node), parts[1]);
+    }
+
+    synchronized void remove(UUID id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return;
+        }
+        if (node.patronId != null) {
+            placeOf.remove(node.patronId, id);
+        }
+        root = delete(root, node);
+    }
+
+    synchronized boolean contains(UUID id) {
+        return nodes.containsKey(id);
+    }
+
+    // 1-based place in the queue, or 0 if the reservation is not queued.
+    synchronized int position(UUID id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            return 0;
+        }
+        int before = 0;
+        Node current = root;
+        while (current != node) {
+            if (node.compareTo(current.at, current.id) < 0) {
+                current = current.left;
+            } else {
+                before += size(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return before + size(node.left) + 1;
+    }
+
+    // The first queued id the predicate accepts, walking from the head.
+    synchronized UUID first(Predicate<UUID> accept) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node current = root;
+        while (current != null || !path.isEmpty()) {
+            while (current != null) {
+                path.push(current);
+                current = current.left;
+            }
+            current = path.pop();
+            if (accept.test(current.id)) {
+                return current.id;
+            }
+            current = current.right;
+        }
+        return null;
+    }
+
+    // Removes and returns the first queued id the predicate accepts.
+    synchronized UUID poll(Predicate<UUID> accept) {
+        UUID id = first(accept);
+        if (id != null) {
+            remove(id);
+        }
+        return id;
+    }
+
+    synchronized List<UUID> ids() {
+        List<UUID> ids = new ArrayList<>(size(root));
+        first(id -> !ids.add(id));
+        return ids;
+    }
+
+    synchronized void clear() {
+        root = null;
+        nodes.clear();
+        placeOf.clear();
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    // Splits into the nodes before (at, id) and the rest.
+    private static Node[] split(Node node, long at, UUID id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (node.compareTo(at, id) < 0) {
+            Node[] parts = split(node.right, at, id);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, at, id);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node delete(Node node, Node target) {
+        if (node == null) {
+            return null;
+        }
+        if (node == target) {
+            return merge(node.left, node.right);
+        }
+        if (target.compareTo(node.at, node.id) < 0) {
+            node.left = delete(node.left, target);
+        } else {
+            node.right = delete(node.right, target);
+        }
+        return update(node);
+    }
+}
@@ -0,0 +1,87 @@
+package com.debo.hw12.state;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+// Base of the LibraryState tables: a UuidMap whose subclasses keep secondary indexes over its
+// entries. Every put, replace and remove passes the entry to index or its id to unindex. The
+// entities themselves change in place, so whoever changes one calls refresh to index it again:
+// mutations on close, inventory notifications and the snapshot decoder. clear is left to each
+// table, which empties its own indexes.
+public abstract class IndexedTable<V> extends UuidMap<V> {
+    private final Function<V, UUID> idOf;
+
+    protected IndexedTable(Function<V, UUID> idOf) {
+        this.idOf = idOf;
+    }
+
+    // Indexes the entity again if it is the one stored under its id.
+    public void refresh(V entity) {
+        UUID id = idOf.apply(entity);
+        if (id != null && peek(id) == entity) {
+            index(entity);
+        }
+    }
+
+    // The stored entry, bypassing anything a subclass does on get.
+    protected V peek(Object key) {
+        return super.get(key);
+    }
+
+    // Indexes the entry under its current fields, replacing whatever it was indexed under.
+    protected abstract void index(V value);
+
+    protected abstract void unindex(UUID id);
+
+    @Override
+    public V put(UUID key, V value) {
+        V previous = super.put(key, value);
+        index(value);
+        return previous;
+    }
+
+    @Override
+    public V putIfAbsent(UUID key, V value) {
+        V existing = super.putIfAbsent(key, value);
+        if (existing == null) {
+            index(value);
+        }
+        return existing;
+    }
+
+    @Override
+    public V replace(UUID key, V value) {
+        V previous = super.replace(key, value);
+        if (previous != null) {
+            index(value);
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean replace(UUID key, V oldValue, V newValue) {
+        boolean replaced = super.replace(key, oldValue, newValue);
+        if (replaced) {
+            index(newValue);
+        }
+        return replaced;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V removed = super.remove(key);
+        if (removed != null) {
+            unindex((UUID) key);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        boolean removed = super.remove(key, value);
+        if (removed) {
+            unindex((UUID) key);
+        }
+        return removed;
+    }
+}
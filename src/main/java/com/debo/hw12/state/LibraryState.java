@@ -2,63 +2,229 @@ package com.debo.hw12.state;
 
 import com.debo.hw12.model.*;
 import com.debo.hw12.observer.InventoryObserver;
+import com.debo.hw12.state.persistence.MutationJournal;
+import com.debo.hw12.state.persistence.SnapshotCapture;
+import com.debo.hw12.state.persistence.SnapshotCodec;
+import com.debo.hw12.state.persistence.SyncMode;
 import lombok.Getter;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
-public class LibraryState implements Serializable {
+public class LibraryState {
     private static LibraryState instance;
-    private static final String STATE_FILE = "library_state.ser";
+    private static final String DATA_DIR = System.getProperty("library.data.dir", ".");
+    private static final String LEGACY_STATE_FILE = "library_state.snapshot";
+    private static final String SNAPSHOT_PREFIX = "library_state-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String JOURNAL_DIR = "journal";
+    private static final SyncMode JOURNAL_SYNC = SyncMode.valueOf(System.getProperty("library.journal.sync", "GROUP"));
+    private static final int GROUP_COMMIT_MAX_BATCH = Integer.getInteger("library.journal.groupCommit.maxBatch", 128);
+    private static final long GROUP_COMMIT_MAX_WAIT_MILLIS = Long.getLong("library.journal.groupCommit.maxWaitMillis", 2L);
+    private static final boolean COPY_COLUMNS = Boolean.parseBoolean(System.getProperty("library.copyColumns", "true"));
 
     @Getter
-    private final Map<UUID, Book> books = new ConcurrentHashMap<>();
+    private final FacetIndex facets = new FacetIndex();
     @Getter
-    private final Map<UUID, ItemCopy> itemCopies = new ConcurrentHashMap<>();
+    private final BookTable books = new BookTable(facets);
     @Getter
-    private final Map<UUID, Patron> patrons = new ConcurrentHashMap<>();
+    private final CopyTable itemCopies = new CopyTable(COPY_COLUMNS, facets);
     @Getter
-    private final Map<UUID, LoanRecord> loans = new ConcurrentHashMap<>();
+    private final PatronTable patrons = new PatronTable();
     @Getter
-    private final Map<UUID, Reservation> reservations = new ConcurrentHashMap<>();
+    private final LoanTable loans = new LoanTable();
+    @Getter
+    private final ReservationTable reservations = new ReservationTable();
 
     private final List<InventoryObserver> observers = new ArrayList<>();
+    private final Path dataDir;
+    private MutationJournal journal;
+
+    // Mutations hold the read side while open; a snapshot takes the write side just long enough
+    // to roll the journal and start its capture, so no mutation straddles the snapshot's lsn.
+    private final ReadWriteLock epoch = new ReentrantReadWriteLock();
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "library-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile SnapshotCapture capture;
 
-    private LibraryState() {}
+    private LibraryState(Path dataDir) {
+        this.dataDir = dataDir;
+    }
 
     public static synchronized LibraryState getInstance() {
         if (instance == null) {
-            instance = loadState();
+            instance = load(Paths.get(DATA_DIR));
         }
         return instance;
     }
 
+    // Restores the last snapshot in the given directory and replays the journal tail on top of it.
+    // Books and copies are left in the mapped snapshot and decoded as they are first looked up.
+    public static LibraryState load(Path dataDir) {
+        LibraryState state = new LibraryState(dataDir);
+        try {
+            List<Path> snapshots = snapshotFiles(dataDir);
+            Path latest = snapshots.isEmpty() ? dataDir.resolve(LEGACY_STATE_FILE) : snapshots.getLast();
+            long snapshotLsn = SnapshotCodec.read(latest, state);
+            state.journal = MutationJournal.open(dataDir.resolve(JOURNAL_DIR),
+                    JOURNAL_SYNC, GROUP_COMMIT_MAX_BATCH, GROUP_COMMIT_MAX_WAIT_MILLIS);
+            state.journal.replay(snapshotLsn, state);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load library state", e);
+        }
+        return state;
+    }
+
     public void addObserver(InventoryObserver observer) {
         observers.add(observer);
     }
 
+    public void removeObserver(InventoryObserver observer) {
+        observers.remove(observer);
+    }
+
     public void notifyInventoryChange(ItemCopy copy) {
+        itemCopies.refresh(copy);
         observers.forEach(o -> o.onInventoryChange(copy));
     }
 
+    public Mutation beginMutation() {
+        epoch.readLock().lock();
+        return new Mutation(this);
+    }
+
+    // Keeps the pre-change image of an entity for a snapshot that is being captured.
+    void preserve(Object entity) {
+        SnapshotCapture current = capture;
+        if (current != null) {
+            current.preserve(entity);
+        }
+    }
+
+    // Returns once the record is as durable as the configured sync mode demands.
+    void journal(List<Object> entities) {
+        journal.sync(journal.append(entities));
+    }
+
+    // Brings derived structures up to date with the after-images of a closed mutation.
+    void committed(List<Object> entities) {
+        for (Object entity : entities) {
+            if (entity instanceof ItemCopy copy) {
+                itemCopies.refresh(copy);
+            } else if (entity instanceof Book book) {
+                books.refresh(book);
+            } else if (entity instanceof Patron patron) {
+                patrons.refresh(patron);
+            } else if (entity instanceof LoanRecord loan) {
+                loans.refresh(loan);
+            } else if (entity instanceof Reservation reservation) {
+                reservations.refresh(reservation);
+            }
+        }
+    }
+
+    void endMutation() {
+        epoch.readLock().unlock();
+    }
+
+    // Must not be called with a mutation open on the calling thread.
     public void saveState() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(STATE_FILE))) {
-            oos.writeObject(this);
+        try {
+            saveStateInBackground().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Failed to save library state", e.getCause());
+        }
+    }
+
+    // Snapshots the state as of the current journal position on the snapshot thread. Mutations
+    // only wait for the journal roll; after that they keep running while the image is captured
+    // and written.
+    public CompletableFuture<Void> saveStateInBackground() {
+        return CompletableFuture.runAsync(this::writeSnapshot, snapshotWriter);
+    }
+
+    // Each snapshot gets a new file named after its lsn, since the previous one may still be
+    // mapped by a lazily loaded state.
+    private void writeSnapshot() {
+        SnapshotCapture current;
+        epoch.writeLock().lock();
+        try {
+            current = new SnapshotCapture(this, journal.roll());
+            capture = current;
+        } finally {
+            epoch.writeLock().unlock();
+        }
+        try {
+            current.collect();
+        } finally {
+            capture = null;
+        }
+
+        long lsn = current.lsn();
+        Path stateFile = dataDir.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+        Path tempFile = dataDir.resolve(stateFile.getFileName() + ".tmp");
+        try {
+            SnapshotCodec.write(tempFile, current);
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.discardUpTo(lsn);
+            for (Path old : snapshotFiles(dataDir)) {
+                if (!old.equals(stateFile)) {
+                    deleteQuietly(old);
+                }
+            }
+            deleteQuietly(dataDir.resolve(LEGACY_STATE_FILE));
         } catch (IOException e) {
             throw new RuntimeException("Failed to save library state", e);
         }
     }
 
-    private static LibraryState loadState() {
-        File file = new File(STATE_FILE);
-        if (!file.exists()) {
-            return new LibraryState();
+    public void close() {
+        snapshotWriter.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close library journal", e);
+        }
+    }
+
+    // Older generations are only garbage; one that is still mapped (Windows refuses to delete
+    // those) is removed by a later save.
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Snapshot generations in the directory, oldest first; the zero-padded lsn sorts by name.
+    private static List<Path> snapshotFiles(Path dataDir) throws IOException {
+        if (!Files.isDirectory(dataDir)) {
+            return List.of();
         }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            return (LibraryState) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            return new LibraryState();
+        try (Stream<Path> files = Files.list(dataDir)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.LoanStatus;
+import com.debo.hw12.model.EpochTime;
+import com.debo.hw12.model.LoanRecord;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// The loans table, indexed by patron, by copy and by status: every loan a patron or a copy ever
+// had, the set of active loans, and each checked-out copy's active loan. Loans only grow, so
+// account and circulation lookups go through these instead of the whole table. Active loans
+// also wait in a due-date ordered set until takeDue finds them past due and moves them to the
+// overdue set, so each loan becomes overdue once.
+public class LoanTable extends IndexedTable<LoanRecord> {
+    private final UuidMap<Set<UUID>> byPatron = new UuidMap<>();
+    private final UuidMap<Set<UUID>> byCopy = new UuidMap<>();
+    private final Set<UUID> active = ConcurrentHashMap.newKeySet();
+    private final UuidMap<UUID> activeByCopy = new UuidMap<>();
+    private final ConcurrentSkipListSet<Deadline> pendingDue = new ConcurrentSkipListSet<>();
+    private final Set<UUID> overdue = ConcurrentHashMap.newKeySet();
+    // What each loan is currently indexed under.
+    private final UuidMap<Keys> indexed = new UuidMap<>();
+    private final Object[] locks = new Object[64];
+
+    private record Keys(UUID patronId, UUID copyId, boolean active, long dueAt) {
+        boolean awaitsDue() {
+            return active && dueAt != EpochTime.NONE;
+        }
+    }
+
+    public LoanTable() {
+        super(LoanRecord::getId);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public LoanRecord activeLoanFor(UUID copyId) {
+        UUID loanId = copyId == null ? null : activeByCopy.get(copyId);
+        LoanRecord loan = loanId == null ? null : get(loanId);
+        return loan != null && loan.getStatus() == LoanStatus.ACTIVE && copyId.equals(loan.getItemCopyId()) ? loan : null;
+    }
+
+    public List<LoanRecord> activeLoans() {
+        return resolve(active);
+    }
+
+    public List<LoanRecord> loansOfPatron(UUID patronId) {
+        return resolve(patronId == null ? null : byPatron.get(patronId));
+    }
+
+    public List<LoanRecord> loansOfCopy(UUID copyId) {
+        return resolve(copyId == null ? null : byCopy.get(copyId));
+    }
+
+    // Active loans that were due before `now` and had not been taken yet. Each loan is returned
+    // by one call only, unless its due date is changed afterwards.
+    public List<LoanRecord> takeDue(long now) {
+        List<LoanRecord> due = new ArrayList<>();
+        for (Deadline deadline : pendingDue.headSet(Deadline.before(now))) {
+            synchronized (lockFor(deadline.id())) {
+                if (pendingDue.remove(deadline)) {
+                    overdue.add(deadline.id());
+                    LoanRecord loan = get(deadline.id());
+                    if (loan != null) {
+                        due.add(loan);
+                    }
+                }
+            }
+        }
+        return due;
+    }
+
+    // Active loans past due at `now`, whether or not takeDue has handed them out yet.
+    public List<LoanRecord> overdueLoans(long now) {
+        List<LoanRecord> loans = new ArrayList<>(resolve(overdue));
+        for (Deadline deadline : pendingDue.headSet(Deadline.before(now))) {
+            LoanRecord loan = get(deadline.id());
+            if (loan != null) {
+                loans.add(loan);
+            }
+        }
+        return loans;
+    }
+
+    // Earliest due date still waiting to be taken, or EpochTime.NONE.
+    public long nextDueAt() {
+        Deadline first = pendingDue.ceiling(Deadline.before(Long.MIN_VALUE));
+        return first == null ? EpochTime.NONE : first.at();
+    }
+
+    private List<LoanRecord> resolve(Set<UUID> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        List<LoanRecord> loans = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            LoanRecord loan = get(id);
+            if (loan != null) {
+                loans.add(loan);
+            }
+        }
+        return loans;
+    }
+
+    @Override
+    protected void index(LoanRecord loan) {
+        UUID id = loan.getId();
+        Keys keys = new Keys(loan.getPatronId(), loan.getItemCopyId(), loan.getStatus() == LoanStatus.ACTIVE,
+                loan.getDueAt());
+        synchronized (lockFor(id)) {
+            Keys previous = indexed.put(id, keys);
+            if (previous != null) {
+                drop(id, previous, keys);
+            }
+            if (keys.patronId() != null) {
+                byPatron.computeIfAbsent(keys.patronId(), key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            if (keys.copyId() != null) {
+                byCopy.computeIfAbsent(keys.copyId(), key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            if (keys.active()) {
+                active.add(id);
+                if (keys.copyId() != null) {
+                    activeByCopy.put(keys.copyId(), id);
+                }
+            }
+            if (keys.awaitsDue() && !overdue.contains(id)) {
+                pendingDue.add(new Deadline(keys.dueAt(), id));
+            }
+        }
+    }
+
+    // Removes the loan from whatever it was indexed under and is not indexed under now.
+    private void drop(UUID id, Keys previous, Keys current) {
+        if (previous.patronId() != null && (current == null || !previous.patronId().equals(current.patronId()))) {
+            removeFrom(byPatron, previous.patronId(), id);
+        }
+        if (previous.copyId() != null && (current == null || !previous.copyId().equals(current.copyId()))) {
+            removeFrom(byCopy, previous.copyId(), id);
+        }
+        if (previous.active() && (current == null || !current.active())) {
+            active.remove(id);
+        }
+        if (previous.active() && previous.copyId() != null
+                && (current == null || !current.active() || !previous.copyId().equals(current.copyId()))) {
+            activeByCopy.remove(previous.copyId(), id);
+        }
+        if (previous.awaitsDue() && (current == null || !current.awaitsDue() || current.dueAt() != previous.dueAt())) {
+            pendingDue.remove(new Deadline(previous.dueAt(), id));
+            overdue.remove(id);
+        }
+    }
+
+    // Emptied sets are left in place; dropping them could lose a concurrent add for another loan.
+    private static void removeFrom(UuidMap<Set<UUID>> index, UUID key, UUID id) {
+        Set<UUID> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    @Override
+    protected void unindex(UUID id) {
+        synchronized (lockFor(id)) {
+            Keys previous = indexed.remove(id);
+            if (previous != null) {
+                drop(id, previous, null);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        byPatron.clear();
+        byCopy.clear();
+        active.clear();
+        activeByCopy.clear();
+        pendingDue.clear();
+        overdue.clear();
+        indexed.clear();
+    }
+}
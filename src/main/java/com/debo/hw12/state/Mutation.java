@@ -0,0 +1,38 @@
+package com.debo.hw12.state;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A unit of change against LibraryState. Services touch every entity they create or modify
+// and the after-images of those entities are journaled together when the mutation closes.
+// Touching has to happen before the change so a running snapshot can keep the old image.
+public class Mutation implements AutoCloseable {
+    private final LibraryState state;
+    private final List<Object> touched = new ArrayList<>();
+
+    Mutation(LibraryState state) {
+        this.state = state;
+    }
+
+    public void touch(Object entity) {
+        for (Object existing : touched) {
+            if (existing == entity) {
+                return;
+            }
+        }
+        state.preserve(entity);
+        touched.add(entity);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!touched.isEmpty()) {
+                state.journal(touched);
+                state.committed(touched);
+            }
+        } finally {
+            state.endMutation();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.model.Patron;
+import com.debo.hw12.query.AccessPath;
+import com.debo.hw12.query.Query;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+// The patrons table, with an index from each active patron's email, trimmed and lowercased, to
+// the patron's id. Only active patrons hold an email, so a deactivated patron's email can be
+// registered again. Emails are claimed through the same UniqueKeyIndex as book ISBNs, before
+// the patron holding one is stored or updated.
+public class PatronTable extends IndexedTable<Patron> {
+    private final UniqueKeyIndex byEmail = new UniqueKeyIndex((id, email) -> {
+        Patron patron = get(id);
+        return patron != null && patron.isActive() && email.equals(normalizeEmail(patron.getEmail()));
+    });
+
+    public PatronTable() {
+        super(Patron::getId);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Patron findByEmail(String email) {
+        String key = normalizeEmail(email);
+        if (key == null) {
+            return null;
+        }
+        UUID id = byEmail.find(key);
+        Patron patron = id == null ? null : get(id);
+        return patron != null && patron.isActive() && key.equals(normalizeEmail(patron.getEmail())) ? patron : null;
+    }
+
+    // Reserves the email for a patron that is about to be stored or to take it over. Returns
+    // false if another active patron holds it or has claimed it first.
+    public boolean claimEmail(String email, UUID patronId) {
+        return byEmail.claim(normalizeEmail(email), patronId);
+    }
+
+    // Gives up a claim that was never committed.
+    public void releaseEmail(String email, UUID patronId) {
+        byEmail.release(normalizeEmail(email), patronId);
+    }
+
+    // Email equality for the query planner. The index folds case, so the planner's own exact
+    // comparison still decides.
+    public List<AccessPath<Patron>> accessPaths() {
+        return List.of(new TablePath<>("email",
+                comparison -> emailOf(comparison) == null ? -1 : findByEmail(emailOf(comparison)) == null ? 0 : 1,
+                comparison -> Optional.ofNullable(findByEmail(emailOf(comparison))).stream().toList()));
+    }
+
+    private static String emailOf(Query.Comparison comparison) {
+        return comparison.field().equals("email") && comparison.operator() == Query.Operator.EQUALS
+                && comparison.value() instanceof String email ? email : null;
+    }
+
+    @Override
+    protected void index(Patron patron) {
+        byEmail.index(patron.getId(), patron.isActive() ? normalizeEmail(patron.getEmail()) : null);
+    }
+
+    @Override
+    protected void unindex(UUID id) {
+        byEmail.remove(id);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        byEmail.clear();
+    }
+}
@@ -0,0 +1,205 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.enums.ReservationStatus;
+import com.debo.hw12.model.EpochTime;
+import com.debo.hw12.model.Reservation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToIntFunction;
+
+// The reservations table, with a hold queue of each item's pending reservations, the READY
+// reservation each held copy is set aside for, and an expiry-ordered set of pending and READY
+// reservations, so an expiry sweep only visits what has expired.
+// Queue positions are read from the hold queue rather than stored: indexing a reservation binds
+// it to positionOf. Like patron emails, a place in a queue is claimed before the reservation is
+// stored, which is how a patron is kept to one pending reservation per item.
+public class ReservationTable extends IndexedTable<Reservation> {
+    private final UuidMap<HoldQueue> queues = new UuidMap<>();
+    private final UuidMap<UUID> heldBy = new UuidMap<>();
+    private final ConcurrentSkipListSet<Deadline> expiring = new ConcurrentSkipListSet<>();
+    // What each reservation is currently indexed under.
+    private final UuidMap<Keys> indexed = new UuidMap<>();
+    private final Object[] locks = new Object[64];
+    private final ToIntFunction<Reservation> positions = this::positionOf;
+
+    private record Keys(UUID itemId, UUID patronId, long reservedAt, ReservationStatus status, long expiresAt,
+                        UUID heldCopyId) {
+        boolean pending() {
+            return status == ReservationStatus.PENDING;
+        }
+
+        boolean holds() {
+            return status == ReservationStatus.READY && heldCopyId != null;
+        }
+
+        boolean expires() {
+            return (pending() || status == ReservationStatus.READY) && expiresAt != EpochTime.NONE;
+        }
+    }
+
+    public ReservationTable() {
+        super(Reservation::getId);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Pending reservations for the item, in queue order.
+    public List<Reservation> pendingFor(UUID itemId) {
+        HoldQueue queue = itemId == null ? null : queues.get(itemId);
+        if (queue == null) {
+            return List.of();
+        }
+        List<Reservation> pending = new ArrayList<>();
+        for (UUID id : queue.ids()) {
+            Reservation reservation = get(id);
+            if (reservation != null && reservation.getStatus() == ReservationStatus.PENDING) {
+                pending.add(reservation);
+            }
+        }
+        return pending;
+    }
+
+    // The pending reservation at the front of the item's queue, or null.
+    public Reservation nextInLine(UUID itemId) {
+        HoldQueue queue = itemId == null ? null : queues.get(itemId);
+        UUID id = queue == null ? null : queue.first(candidate -> {
+            Reservation reservation = get(candidate);
+            return reservation != null && reservation.getStatus() == ReservationStatus.PENDING;
+        });
+        return id == null ? null : get(id);
+    }
+
+    // Takes the pending reservation at the front of the item's queue out of it, so no other copy
+    // can be allocated to it; refresh puts it back if it stays pending.
+    public Reservation pollNextInLine(UUID itemId) {
+        HoldQueue queue = itemId == null ? null : queues.get(itemId);
+        UUID id = queue == null ? null : queue.poll(candidate -> {
+            Reservation reservation = get(candidate);
+            return reservation != null && reservation.getStatus() == ReservationStatus.PENDING;
+        });
+        return id == null ? null : get(id);
+    }
+
+    // The READY reservation the copy is set aside for, or null.
+    public Reservation heldFor(UUID copyId) {
+        UUID id = copyId == null ? null : heldBy.get(copyId);
+        Reservation reservation = id == null ? null : get(id);
+        return reservation != null && reservation.getStatus() == ReservationStatus.READY
+                && copyId.equals(reservation.getHeldCopyId()) ? reservation : null;
+    }
+
+    // Earliest expiry still waiting to be taken, or EpochTime.NONE.
+    public long nextExpiryAt() {
+        Deadline first = expiring.ceiling(Deadline.before(Long.MIN_VALUE));
+        return first == null ? EpochTime.NONE : first.at();
+    }
+
+    // 1-based place of the reservation in its item's queue, or 0 if it is not queued.
+    public int positionOf(Reservation reservation) {
+        HoldQueue queue = reservation.getItemId() == null ? null : queues.get(reservation.getItemId());
+        return queue == null ? 0 : queue.position(reservation.getId());
+    }
+
+    // Takes a place in the item's queue for a reservation that is about to be stored. Returns
+    // false if the patron already holds a place for the item.
+    public boolean enqueue(Reservation reservation) {
+        return queueFor(reservation.getItemId())
+                .offer(reservation.getId(), reservation.getPatronId(), reservation.getReservedAt());
+    }
+
+    // Gives up a place that was never committed.
+    public void release(Reservation reservation) {
+        UUID id = reservation.getId();
+        synchronized (lockFor(id)) {
+            Keys keys = indexed.get(id);
+            HoldQueue queue = queues.get(reservation.getItemId());
+            if (queue != null && (keys == null || !keys.pending() || !reservation.getItemId().equals(keys.itemId()))) {
+                queue.remove(id);
+            }
+        }
+    }
+
+    private HoldQueue queueFor(UUID itemId) {
+        return queues.computeIfAbsent(itemId, key -> new HoldQueue());
+    }
+
+    // Pending and READY reservations that expired before `now`, each returned by one call only unless its
+    // expiry is changed afterwards. The caller is expected to expire them.
+    public List<Reservation> takeExpired(long now) {
+        List<Reservation> expired = new ArrayList<>();
+        for (Deadline deadline : expiring.headSet(Deadline.before(now))) {
+            if (expiring.remove(deadline)) {
+                Reservation reservation = get(deadline.id());
+                if (reservation != null) {
+                    expired.add(reservation);
+                }
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    protected void index(Reservation reservation) {
+        UUID id = reservation.getId();
+        Keys keys = new Keys(reservation.getItemId(), reservation.getPatronId(), reservation.getReservedAt(),
+                reservation.getStatus(), reservation.getExpiresAt(), reservation.getHeldCopyId());
+        reservation.setQueueLookup(positions);
+        synchronized (lockFor(id)) {
+            Keys previous = indexed.put(id, keys);
+            if (previous != null) {
+                drop(id, previous, keys);
+            }
+            if (keys.pending() && keys.itemId() != null) {
+                queueFor(keys.itemId()).add(id, keys.patronId(), keys.reservedAt());
+            }
+            if (keys.holds()) {
+                heldBy.put(keys.heldCopyId(), id);
+            }
+            if (keys.expires() && (previous == null || !previous.equals(keys))) {
+                expiring.add(new Deadline(keys.expiresAt(), id));
+            }
+        }
+    }
+
+    // Removes the reservation from whatever it was indexed under and is not indexed under now.
+    private void drop(UUID id, Keys previous, Keys current) {
+        if (previous.pending() && previous.itemId() != null
+                && (current == null || !current.pending() || !previous.itemId().equals(current.itemId()))) {
+            HoldQueue queue = queues.get(previous.itemId());
+            if (queue != null) {
+                queue.remove(id);
+            }
+        }
+        if (previous.holds() && (current == null || !current.holds() || !previous.heldCopyId().equals(current.heldCopyId()))) {
+            heldBy.remove(previous.heldCopyId(), id);
+        }
+        if (previous.expires() && (current == null || !current.expires() || current.expiresAt() != previous.expiresAt())) {
+            expiring.remove(new Deadline(previous.expiresAt(), id));
+        }
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    @Override
+    protected void unindex(UUID id) {
+        synchronized (lockFor(id)) {
+            Keys previous = indexed.remove(id);
+            if (previous != null) {
+                drop(id, previous, null);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        queues.clear();
+        heldBy.clear();
+        expiring.clear();
+        indexed.clear();
+    }
+}
@@ -0,0 +1,171 @@
+package com.debo.hw12.state;
+
+import java.util.*;
+
+// Immutable prefix index for typeahead. Every suggestion is stored once, folded the same way
+// as the text index, and keyed at each of its word starts, so "fowl" finds "Martin Fowler".
+// The keys are just (suggestion, offset) pairs in two int arrays, sorted by the folded text
+// from that offset, which puts every key with a given prefix in one contiguous range. A
+// max-popularity segment tree over the keys pulls the top entries out of a range without
+// walking it.
+public final class SuggestionIndex {
+    private final String[] texts;
+    private final String[] folded;
+    private final int[] popularity;
+    private final int[] keySuggestions;
+    private final int[] keyOffsets;
+    private final int[] tree;
+    private final int leaves;
+
+    private SuggestionIndex(String[] texts, String[] folded, int[] popularity, int[] keySuggestions, int[] keyOffsets) {
+        this.texts = texts;
+        this.folded = folded;
+        this.popularity = popularity;
+        this.keySuggestions = keySuggestions;
+        this.keyOffsets = keyOffsets;
+        this.leaves = keySuggestions.length;
+        this.tree = new int[2 * leaves];
+        for (int key = 0; key < leaves; key++) {
+            tree[leaves + key] = key;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    // Suggestions that fold to the same text are merged and their popularity added up.
+    public static SuggestionIndex build(Map<String, Integer> popularityByText) {
+        Map<String, String> textByFolded = new HashMap<>();
+        Map<String, Integer> popularityByFolded = new HashMap<>();
+        popularityByText.forEach((text, count) -> {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            String key = TextIndex.fold(text.trim());
+            textByFolded.putIfAbsent(key, text.trim());
+            popularityByFolded.merge(key, count, Integer::sum);
+        });
+
+        int size = textByFolded.size();
+        String[] folded = textByFolded.keySet().toArray(new String[0]);
+        String[] texts = new String[size];
+        int[] popularity = new int[size];
+        List<int[]> keys = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            texts[id] = textByFolded.get(folded[id]);
+            popularity[id] = popularityByFolded.get(folded[id]);
+            for (int offset = 0; offset < folded[id].length(); offset++) {
+                if (Character.isLetterOrDigit(folded[id].charAt(offset))
+                        && (offset == 0 || !Character.isLetterOrDigit(folded[id].charAt(offset - 1)))) {
+                    keys.add(new int[]{id, offset});
+                }
+            }
+        }
+        keys.sort((a, b) -> compareKeys(folded, a, b));
+        int[] keySuggestions = new int[keys.size()];
+        int[] keyOffsets = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            keySuggestions[i] = keys.get(i)[0];
+            keyOffsets[i] = keys.get(i)[1];
+        }
+        return new SuggestionIndex(texts, folded, popularity, keySuggestions, keyOffsets);
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    // Up to `limit` suggestions with a word starting with the prefix, most popular first.
+    public List<String> complete(String prefix, int limit) {
+        String query = TextIndex.fold(prefix.trim());
+        if (query.isEmpty() || limit <= 0 || leaves == 0) {
+            return List.of();
+        }
+        int from = bound(query, false);
+        int to = bound(query, true);
+        List<String> results = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        // Ranges ordered by the popularity of their best key.
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> Integer.compare(popularity[keySuggestions[b[2]]],
+                popularity[keySuggestions[a[2]]]));
+        offer(ranges, from, to);
+        while (!ranges.isEmpty() && results.size() < limit) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            if (seen.add(keySuggestions[best])) {
+                results.add(texts[keySuggestions[best]]);
+            }
+            offer(ranges, range[0], best);
+            offer(ranges, best + 1, range[1]);
+        }
+        return results;
+    }
+
+    private void offer(PriorityQueue<int[]> ranges, int from, int to) {
+        if (from < to) {
+            ranges.add(new int[]{from, to, best(from, to)});
+        }
+    }
+
+    // Key with the highest popularity in [from, to).
+    private int best(int from, int to) {
+        int result = -1;
+        for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) {
+                result = better(result, tree[lo++]);
+            }
+            if ((hi & 1) == 1) {
+                result = better(result, tree[--hi]);
+            }
+        }
+        return result;
+    }
+
+    private int better(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        return popularity[keySuggestions[b]] > popularity[keySuggestions[a]] ? b : a;
+    }
+
+    // First key not below the prefix, or with `after` set, first key past every key it starts.
+    private int bound(String query, boolean after) {
+        int lo = 0;
+        int hi = leaves;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePrefix(folded[keySuggestions[mid]], keyOffsets[mid], query);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Zero when the key starts with the query.
+    private static int comparePrefix(String text, int offset, String query) {
+        int length = Math.min(text.length() - offset, query.length());
+        for (int i = 0; i < length; i++) {
+            int cmp = Character.compare(text.charAt(offset + i), query.charAt(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return text.length() - offset < query.length() ? -1 : 0;
+    }
+
+    private static int compareKeys(String[] folded, int[] a, int[] b) {
+        String left = folded[a[0]];
+        String right = folded[b[0]];
+        int length = Math.min(left.length() - a[1], right.length() - b[1]);
+        for (int i = 0; i < length; i++) {
+            int cmp = Character.compare(left.charAt(a[1] + i), right.charAt(b[1] + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(left.length() - a[1], right.length() - b[1]);
+    }
+}
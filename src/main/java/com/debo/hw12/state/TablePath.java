@@ -0,0 +1,22 @@
+package com.debo.hw12.state;
+
+import com.debo.hw12.query.AccessPath;
+import com.debo.hw12.query.Query;
+
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// An access path backed by a pair of functions, for tables exposing their indexes to the planner.
+record TablePath<T>(String name, ToLongFunction<Query.Comparison> estimator,
+                    Function<Query.Comparison, Collection<T>> fetcher) implements AccessPath<T> {
+    @Override
+    public long estimate(Query.Comparison comparison) {
+        return estimator.applyAsLong(comparison);
+    }
+
+    @Override
+    public Collection<T> fetch(Query.Comparison comparison) {
+        return fetcher.apply(comparison);
+    }
+}
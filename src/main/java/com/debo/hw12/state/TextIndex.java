@@ -0,0 +1,171 @@
+package com.debo.hw12.state;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+// Ranked full-text index over several text fields of a document, scored BM25F-style: each
+// field's term frequency is normalised against that field's average length and weighted by
+// the field's boost, and the sum goes through the usual BM25 saturation times the term's idf.
+// Text is folded before indexing (accents stripped, lowercased) and split on anything that is
+// not a letter or digit.
+class TextIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final double[] boosts;
+    // term -> document -> frequency of the term in each field
+    private final ConcurrentHashMap<String, ConcurrentHashMap<UUID, int[]>> postings = new ConcurrentHashMap<>();
+    private final UuidMap<Document> documents = new UuidMap<>();
+    private final AtomicLongArray totalLengths;
+    private final Object[] locks = new Object[64];
+
+    record Hit(UUID id, double score) {
+    }
+
+    private record Document(Map<String, int[]> terms, int[] lengths) {
+    }
+
+    TextIndex(double... boosts) {
+        this.boosts = boosts.clone();
+        this.totalLengths = new AtomicLongArray(boosts.length);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    static String fold(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // One text per field, in boost order; a null array removes the document.
+    void index(UUID id, String[] fields) {
+        Document document = fields == null ? null : analyze(fields);
+        synchronized (lockFor(id)) {
+            Document previous = document == null ? documents.remove(id) : documents.put(id, document);
+            if (previous != null) {
+                for (String term : previous.terms().keySet()) {
+                    postings.computeIfPresent(term, (key, docs) -> {
+                        docs.remove(id);
+                        return docs.isEmpty() ? null : docs;
+                    });
+                }
+                for (int field = 0; field < boosts.length; field++) {
+                    totalLengths.addAndGet(field, -previous.lengths()[field]);
+                }
+            }
+            if (document != null) {
+                document.terms().forEach((term, frequencies) -> postings.compute(term, (key, docs) -> {
+                    ConcurrentHashMap<UUID, int[]> updated = docs == null ? new ConcurrentHashMap<>() : docs;
+                    updated.put(id, frequencies);
+                    return updated;
+                }));
+                for (int field = 0; field < boosts.length; field++) {
+                    totalLengths.addAndGet(field, document.lengths()[field]);
+                }
+            }
+        }
+    }
+
+    void remove(UUID id) {
+        index(id, null);
+    }
+
+    void clear() {
+        postings.clear();
+        documents.clear();
+        for (int field = 0; field < boosts.length; field++) {
+            totalLengths.set(field, 0);
+        }
+    }
+
+    // The best `limit` documents for the query, best first. Only a heap of `limit` hits is kept
+    // while scoring, so the full match set is never sorted.
+    List<Hit> top(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        int count = documents.size();
+        if (terms.isEmpty() || count == 0 || limit <= 0) {
+            return List.of();
+        }
+        double[] averageLengths = new double[boosts.length];
+        for (int field = 0; field < boosts.length; field++) {
+            averageLengths[field] = Math.max(1.0, (double) totalLengths.get(field) / count);
+        }
+        Map<UUID, Double> scores = new HashMap<>();
+        for (String term : terms) {
+            ConcurrentHashMap<UUID, int[]> docs = postings.get(term);
+            if (docs == null) {
+                continue;
+            }
+            int frequency = docs.size();
+            double idf = Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+            docs.forEach((id, frequencies) -> {
+                Document document = documents.get(id);
+                if (document != null) {
+                    double weight = weight(frequencies, document.lengths(), averageLengths);
+                    scores.merge(id, idf * weight * (K1 + 1) / (weight + K1), Double::sum);
+                }
+            });
+        }
+        Comparator<Hit> order = Comparator.comparingDouble(Hit::score).thenComparing(Hit::id, Comparator.reverseOrder());
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, order);
+        scores.forEach((id, score) -> {
+            Hit hit = new Hit(id, score);
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (order.compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        });
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(order.reversed());
+        return hits;
+    }
+
+    private double weight(int[] frequencies, int[] lengths, double[] averageLengths) {
+        double weight = 0;
+        for (int field = 0; field < boosts.length; field++) {
+            if (frequencies[field] > 0) {
+                double norm = 1 - B + B * lengths[field] / averageLengths[field];
+                weight += boosts[field] * frequencies[field] / norm;
+            }
+        }
+        return weight;
+    }
+
+    private Document analyze(String[] fields) {
+        Map<String, int[]> terms = new HashMap<>();
+        int[] lengths = new int[boosts.length];
+        for (int field = 0; field < boosts.length; field++) {
+            List<String> tokens = tokenize(fields[field]);
+            lengths[field] = tokens.size();
+            for (String token : tokens) {
+                terms.computeIfAbsent(token, key -> new int[boosts.length])[field]++;
+            }
+        }
+        return new Document(terms, lengths);
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+}
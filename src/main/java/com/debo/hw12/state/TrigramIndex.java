@@ -0,0 +1,123 @@
+package com.debo.hw12.state;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Inverted index from each three-character sequence of a lowercased text field to the ids
+// holding it. A substring query can only match texts containing all of its trigrams, so the
+// smallest postings are intersected to get candidates, which callers then check for real.
+// Queries shorter than three characters have no trigrams and get no candidates from here.
+class TrigramIndex {
+    static final int GRAM = 3;
+
+    private final ConcurrentHashMap<Long, Set<UUID>> postings = new ConcurrentHashMap<>();
+    private final UuidMap<String> texts = new UuidMap<>();
+    private final Object[] locks = new Object[64];
+
+    TrigramIndex() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    static String normalize(String text) {
+        return text == null ? null : text.toLowerCase();
+    }
+
+    void index(UUID id, String text) {
+        String normalized = normalize(text);
+        synchronized (lockFor(id)) {
+            String previous = normalized == null ? texts.remove(id) : texts.put(id, normalized);
+            if (Objects.equals(previous, normalized)) {
+                return;
+            }
+            Set<Long> removed = trigrams(previous);
+            Set<Long> added = trigrams(normalized);
+            for (Long gram : removed) {
+                if (!added.contains(gram)) {
+                    postings.computeIfPresent(gram, (key, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+            for (Long gram : added) {
+                if (!removed.contains(gram)) {
+                    postings.compute(gram, (key, ids) -> {
+                        Set<UUID> updated = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                        updated.add(id);
+                        return updated;
+                    });
+                }
+            }
+        }
+    }
+
+    void remove(UUID id) {
+        index(id, null);
+    }
+
+    void clear() {
+        postings.clear();
+        texts.clear();
+    }
+
+    // Ids whose text contains every trigram of the normalized query; null when the query is
+    // too short to narrow anything down.
+    List<UUID> candidates(String normalizedQuery) {
+        Set<Long> grams = trigrams(normalizedQuery);
+        if (grams.isEmpty()) {
+            return null;
+        }
+        List<Set<UUID>> lists = new ArrayList<>(grams.size());
+        for (Long gram : grams) {
+            Set<UUID> ids = postings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<UUID> candidates = new ArrayList<>();
+        for (UUID id : lists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(id);
+            }
+            if (inAll) {
+                candidates.add(id);
+            }
+        }
+        return candidates;
+    }
+
+    // Size of the smallest posting among the query's trigrams, an upper bound on the candidates;
+    // -1 when the query is too short to use the index.
+    int estimate(String normalizedQuery) {
+        Set<Long> grams = trigrams(normalizedQuery);
+        if (grams.isEmpty()) {
+            return -1;
+        }
+        int smallest = Integer.MAX_VALUE;
+        for (Long gram : grams) {
+            Set<UUID> ids = postings.get(gram);
+            smallest = Math.min(smallest, ids == null ? 0 : ids.size());
+        }
+        return smallest;
+    }
+
+    private static Set<Long> trigrams(String text) {
+        if (text == null || text.length() < GRAM) {
+            return Set.of();
+        }
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private Object lockFor(UUID id) {
+        return locks[(id.hashCode() & 0x7fffffff) % locks.length];
+    }
+}
@@ -0,0 +1,87 @@
+package com.debo.hw12.state;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+// Unique key -> entity id, for the ISBNs of books and the emails of patrons. A key can be
+// claimed for an entity before it is stored or changed, which is how creates and key changes
+// detect duplicates atomically; the claim lasts until the entity is indexed under the key or
+// the claim is released. An owner that is stored keeps its key only while `stillHolds` says so,
+// since entities change in place.
+final class UniqueKeyIndex {
+    private final ConcurrentHashMap<String, UUID> owners = new ConcurrentHashMap<>();
+    private final UuidMap<String> keyOf = new UuidMap<>();
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+    private final BiPredicate<UUID, String> stillHolds;
+
+    UniqueKeyIndex(BiPredicate<UUID, String> stillHolds) {
+        this.stillHolds = stillHolds;
+    }
+
+    UUID find(String key) {
+        return owners.get(key);
+    }
+
+    boolean contains(String key) {
+        return owners.containsKey(key);
+    }
+
+    // Returns false if another entity holds the key or has claimed it first.
+    boolean claim(String key, UUID id) {
+        UUID owner = owners.compute(key, (k, current) -> {
+            if (current != null && !current.equals(id) && holds(current, k)) {
+                return current;
+            }
+            claimed.add(k);
+            return id;
+        });
+        return owner.equals(id);
+    }
+
+    // Gives up a claim that was never committed.
+    void release(String key, UUID id) {
+        owners.computeIfPresent(key, (k, current) -> {
+            if (!current.equals(id) || !claimed.remove(k)) {
+                return current;
+            }
+            return stillHolds.test(id, k) ? current : null;
+        });
+    }
+
+    // Indexes the entity under the key, or under none when the key is null. A key held by
+    // another entity stays with it.
+    void index(UUID id, String key) {
+        String previous = key == null ? keyOf.remove(id) : keyOf.put(id, key);
+        if (previous != null && !previous.equals(key)) {
+            owners.remove(previous, id);
+        }
+        if (key != null) {
+            owners.compute(key, (k, current) -> {
+                if (current != null && !current.equals(id) && holds(current, k)) {
+                    return current;
+                }
+                claimed.remove(k);
+                return id;
+            });
+        }
+    }
+
+    void remove(UUID id) {
+        String previous = keyOf.remove(id);
+        if (previous != null) {
+            owners.remove(previous, id);
+        }
+    }
+
+    void clear() {
+        owners.clear();
+        keyOf.clear();
+        claimed.clear();
+    }
+
+    private boolean holds(UUID id, String key) {
+        return claimed.contains(key) || stillHolds.test(id, key);
+    }
+}
@@ -0,0 +1,348 @@
+package com.debo.hw12.state;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+// Concurrent map from UUID to entity without a node per entry. Keys are kept as their two longs
+// in open-addressed parallel arrays (linear probing), split into independently locked segments.
+// Reads are optimistic and only fall back to the segment's read lock when they race a write.
+// Iteration is weakly consistent: each segment is copied as the iterator reaches it.
+public class UuidMap<V> extends AbstractMap<UUID, V> implements ConcurrentMap<UUID, V> {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object DELETED = new Object();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public UuidMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static long hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof UUID id)) {
+            return null;
+        }
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return cast(segmentFor(hash).get(msb, lsb, hash));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(UUID key, V value) {
+        return update(key, value, null, Mode.PUT);
+    }
+
+    @Override
+    public V putIfAbsent(UUID key, V value) {
+        return update(key, value, null, Mode.PUT_IF_ABSENT);
+    }
+
+    @Override
+    public V replace(UUID key, V value) {
+        return update(key, value, null, Mode.REPLACE);
+    }
+
+    @Override
+    public boolean replace(UUID key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        return update(key, newValue, oldValue, Mode.REPLACE_IF_EQUAL) != null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof UUID id ? update(id, null, null, Mode.REMOVE) : null;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return key instanceof UUID id && value != null && update(id, null, value, Mode.REMOVE_IF_EQUAL) != null;
+    }
+
+    private V update(UUID key, V value, Object expected, Mode mode) {
+        Objects.requireNonNull(key);
+        if (value == null && mode != Mode.REMOVE && mode != Mode.REMOVE_IF_EQUAL) {
+            throw new NullPointerException();
+        }
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        long hash = hash(msb, lsb);
+        return cast(segmentFor(hash).update(msb, lsb, hash, value, expected, mode));
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<UUID, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<UUID, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return UuidMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                UuidMap.this.clear();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private enum Mode {
+        PUT, PUT_IF_ABSENT, REPLACE, REPLACE_IF_EQUAL, REMOVE, REMOVE_IF_EQUAL
+    }
+
+    // One slot array per segment. A null value marks a free slot and DELETED a tombstone, so
+    // the nil UUID needs no special casing.
+    private static final class Table {
+        final long[] msbs;
+        final long[] lsbs;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        private volatile int size;
+        private int tombstones;
+
+        Object get(long msb, long lsb, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object value = find(table, msb, lsb, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, msb, lsb, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static Object find(Table t, long msb, long lsb, long hash) {
+            int slot = (int) hash & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                Object value = t.values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (value != DELETED && t.msbs[slot] == msb && t.lsbs[slot] == lsb) {
+                    return value;
+                }
+                slot = (slot + 1) & t.mask;
+            }
+            return null;
+        }
+
+        Object update(long msb, long lsb, long hash, Object value, Object expected, Mode mode) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int slot = (int) hash & t.mask;
+                int firstFree = -1;
+                for (int probes = 0; probes <= t.mask; probes++) {
+                    Object current = t.values[slot];
+                    if (current == null) {
+                        break;
+                    }
+                    if (current == DELETED) {
+                        if (firstFree < 0) {
+                            firstFree = slot;
+                        }
+                    } else if (t.msbs[slot] == msb && t.lsbs[slot] == lsb) {
+                        return updateExisting(t, slot, current, value, expected, mode);
+                    }
+                    slot = (slot + 1) & t.mask;
+                }
+                if (mode != Mode.PUT && mode != Mode.PUT_IF_ABSENT) {
+                    return null;
+                }
+                if (firstFree >= 0) {
+                    slot = firstFree;
+                    tombstones--;
+                }
+                t.msbs[slot] = msb;
+                t.lsbs[slot] = lsb;
+                t.values[slot] = value;
+                size++;
+                if ((size + tombstones) * 4 > (t.mask + 1) * 3) {
+                    rehash();
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Object updateExisting(Table t, int slot, Object current, Object value, Object expected, Mode mode) {
+            switch (mode) {
+                case PUT, REPLACE -> t.values[slot] = value;
+                case PUT_IF_ABSENT -> {
+                    return current;
+                }
+                case REPLACE_IF_EQUAL -> {
+                    if (!current.equals(expected)) {
+                        return null;
+                    }
+                    t.values[slot] = value;
+                }
+                case REMOVE_IF_EQUAL, REMOVE -> {
+                    if (mode == Mode.REMOVE_IF_EQUAL && !current.equals(expected)) {
+                        return null;
+                    }
+                    t.values[slot] = DELETED;
+                    size--;
+                    tombstones++;
+                }
+            }
+            return current;
+        }
+
+        // Grows when live entries fill the table; otherwise only sweeps out tombstones.
+        private void rehash() {
+            Table old = table;
+            int capacity = old.mask + 1;
+            if (size * 2 > capacity) {
+                capacity <<= 1;
+            }
+            Table grown = new Table(capacity);
+            for (int i = 0; i <= old.mask; i++) {
+                Object value = old.values[i];
+                if (value != null && value != DELETED) {
+                    int slot = (int) hash(old.msbs[i], old.lsbs[i]) & grown.mask;
+                    while (grown.values[slot] != null) {
+                        slot = (slot + 1) & grown.mask;
+                    }
+                    grown.msbs[slot] = old.msbs[i];
+                    grown.lsbs[slot] = old.lsbs[i];
+                    grown.values[slot] = value;
+                }
+            }
+            tombstones = 0;
+            table = grown;
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(INITIAL_CAPACITY);
+                size = 0;
+                tombstones = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Copies the live entries out under the read lock.
+        List<Entry<UUID, Object>> entries() {
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                List<Entry<UUID, Object>> entries = new ArrayList<>(size);
+                for (int i = 0; i <= t.mask; i++) {
+                    Object value = t.values[i];
+                    if (value != null && value != DELETED) {
+                        entries.add(new SimpleImmutableEntry<>(new UUID(t.msbs[i], t.lsbs[i]), value));
+                    }
+                }
+                return entries;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<UUID, V>> {
+        private int segment;
+        private Iterator<Entry<UUID, Object>> current = Collections.emptyIterator();
+        private Entry<UUID, V> last;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && segment < SEGMENTS) {
+                current = segments[segment++].entries().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Entry<UUID, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<UUID, Object> entry = current.next();
+            last = new SimpleImmutableEntry<>(entry.getKey(), cast(entry.getValue()));
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            UuidMap.this.remove(last.getKey(), last.getValue());
+            last = null;
+        }
+    }
+}
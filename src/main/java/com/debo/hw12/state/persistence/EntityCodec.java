@@ -0,0 +1,435 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.enums.*;
+import com.debo.hw12.model.*;
+import com.debo.hw12.model.accrual.*;
+import com.debo.hw12.state.LibraryState;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+// Binary after-images of the entities held by LibraryState. References to other
+// entities are written as ids and resolved against the state when a record is applied.
+// Authors, publishers and genres go through a StringDictionary when one is given; the
+// journal writes them inline. Readers must tolerate trailing bytes they do not know about,
+// which is how fields get added without breaking existing files.
+public final class EntityCodec {
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+    private static final int NULL_TERM = -1;
+    private static final int INLINE_TERM = -2;
+
+    private EntityCodec() {}
+
+    public static RecordType typeOf(Object entity) {
+        return switch (entity) {
+            case Book ignored -> RecordType.BOOK;
+            case ItemCopy ignored -> RecordType.ITEM_COPY;
+            case Patron ignored -> RecordType.PATRON;
+            case LoanRecord ignored -> RecordType.LOAN;
+            case Reservation ignored -> RecordType.RESERVATION;
+            default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass().getName());
+        };
+    }
+
+    public static UUID idOf(Object entity) {
+        return switch (entity) {
+            case Book book -> book.getId();
+            case ItemCopy copy -> copy.getId();
+            case Patron patron -> patron.getId();
+            case LoanRecord loan -> loan.getId();
+            case Reservation reservation -> reservation.getId();
+            default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass().getName());
+        };
+    }
+
+    public static void write(DataOutput out, Object entity, StringDictionary dictionary) throws IOException {
+        switch (entity) {
+            case Book book -> writeBook(out, book, dictionary);
+            case ItemCopy copy -> writeCopy(out, copy);
+            case Patron patron -> writePatron(out, patron);
+            case LoanRecord loan -> writeLoan(out, loan);
+            case Reservation reservation -> writeReservation(out, reservation);
+            default -> throw new IllegalArgumentException("Unsupported entity: " + entity.getClass().getName());
+        }
+    }
+
+    // Records are full after-images, so applying one twice leaves the state unchanged.
+    public static void apply(RecordType type, DataInput in, LibraryState state, StringDictionary dictionary) throws IOException {
+        switch (type) {
+            case BOOK -> readBook(in, state, dictionary);
+            case ITEM_COPY -> readCopy(in, state);
+            case PATRON -> readPatron(in, state);
+            case LOAN -> readLoan(in, state);
+            case RESERVATION -> readReservation(in, state);
+        }
+    }
+
+    // Registers the strings of a book that are worth sharing across records.
+    public static void collectTerms(Book book, StringDictionary dictionary) {
+        if (book.getAuthor() != null) {
+            dictionary.add(book.getAuthor());
+        }
+        if (book.getPublisher() != null) {
+            dictionary.add(book.getPublisher());
+        }
+        if (book.getGenres() != null) {
+            book.getGenres().forEach(dictionary::add);
+        }
+    }
+
+    private static void writeBook(DataOutput out, Book book, StringDictionary dictionary) throws IOException {
+        writeUuid(out, book.getId());
+        writeString(out, book.getTitle());
+        writeString(out, book.getDescription());
+        writeTimestamp(out, book.getAcquisitionDate());
+        out.writeBoolean(book.isActive());
+        writeString(out, book.getIsbn());
+        writeTerm(out, book.getAuthor(), dictionary);
+        writeTerm(out, book.getPublisher(), dictionary);
+        out.writeInt(book.getPublicationYear());
+        Set<String> genres = book.getGenres() == null ? Set.of() : book.getGenres();
+        out.writeInt(genres.size());
+        for (String genre : genres) {
+            writeTerm(out, genre, dictionary);
+        }
+        writeEnum(out, book.getCondition());
+    }
+
+    private static void readBook(DataInput in, LibraryState state, StringDictionary dictionary) throws IOException {
+        UUID id = readUuid(in);
+        String title = readString(in);
+        String description = readString(in);
+        LocalDateTime acquisitionDate = readTimestamp(in);
+        boolean active = in.readBoolean();
+        String isbn = readString(in);
+        String author = readTerm(in, dictionary);
+        String publisher = readTerm(in, dictionary);
+        int publicationYear = in.readInt();
+        int genreCount = in.readInt();
+        Set<String> genres = new HashSet<>();
+        for (int i = 0; i < genreCount; i++) {
+            genres.add(readTerm(in, dictionary));
+        }
+        Condition condition = readEnum(in, Condition.values());
+
+        Book book = state.getBooks().get(id);
+        if (book == null) {
+            book = Book.builder().id(id).copies(new ArrayList<>()).build();
+            state.getBooks().put(id, book);
+        }
+        book.setTitle(title);
+        book.setDescription(description);
+        book.setAcquisitionDate(acquisitionDate);
+        book.setActive(active);
+        book.setIsbn(isbn);
+        book.setAuthor(author);
+        book.setPublisher(publisher);
+        book.setPublicationYear(publicationYear);
+        book.setGenres(genres);
+        book.setCondition(condition);
+        state.getBooks().refresh(book);
+    }
+
+    private static void writeCopy(DataOutput out, ItemCopy copy) throws IOException {
+        writeUuid(out, copy.getId());
+        writeUuid(out, copy.getItemId());
+        writeString(out, copy.getBarcode());
+        writeString(out, copy.getLocation());
+        writeEnum(out, copy.getStatus());
+        writeTimestamp(out, copy.getAcquisitionDate());
+        writeEnum(out, copy.getCondition());
+        writeString(out, copy.getNotes());
+        writeEnum(out, copy.getType());
+    }
+
+    private static void readCopy(DataInput in, LibraryState state) throws IOException {
+        UUID id = readUuid(in);
+        UUID itemId = readUuid(in);
+        String barcode = readString(in);
+        String location = readString(in);
+        ItemStatus status = readEnum(in, ItemStatus.values());
+        LocalDateTime acquisitionDate = readTimestamp(in);
+        Condition condition = readEnum(in, Condition.values());
+        String notes = readString(in);
+        ItemType type = readEnum(in, ItemType.values());
+
+        ItemCopy copy = state.getItemCopies().get(id);
+        if (copy == null) {
+            Book book = itemId == null ? null : state.getBooks().get(itemId);
+            copy = ItemCopy.builder()
+                    .id(id)
+                    .itemRef(book == null ? EntityRef.lazy(itemId, state.getBooks()) : EntityRef.to(itemId, book))
+                    .loanHistory(new ArrayList<>())
+                    .build();
+            state.getItemCopies().put(id, copy);
+            if (book != null) {
+                book.addCopy(copy);
+            }
+        }
+        copy.setBarcode(barcode);
+        copy.setLocation(location);
+        copy.setStatus(status);
+        copy.setAcquisitionDate(acquisitionDate);
+        copy.setCondition(condition);
+        copy.setNotes(notes);
+        copy.setType(type);
+        state.getItemCopies().refresh(copy);
+    }
+
+    private static void writePatron(DataOutput out, Patron patron) throws IOException {
+        writeUuid(out, patron.getId());
+        writeString(out, patron.getName());
+        writeString(out, patron.getEmail());
+        writeEnum(out, patron.getType());
+        writeTimestamp(out, patron.getRegistrationDate());
+        out.writeBoolean(patron.isActive());
+    }
+
+    private static void readPatron(DataInput in, LibraryState state) throws IOException {
+        UUID id = readUuid(in);
+        String name = readString(in);
+        String email = readString(in);
+        PatronType type = readEnum(in, PatronType.values());
+        LocalDateTime registrationDate = readTimestamp(in);
+        boolean active = in.readBoolean();
+
+        Patron patron = state.getPatrons().get(id);
+        if (patron == null) {
+            patron = Patron.builder()
+                    .id(id)
+                    .currentLoans(new HashSet<>())
+                    .loanHistory(new ArrayList<>())
+                    .build();
+            state.getPatrons().put(id, patron);
+        }
+        patron.setName(name);
+        patron.setEmail(email);
+        patron.setType(type);
+        patron.setRegistrationDate(registrationDate);
+        patron.setActive(active);
+        state.getPatrons().refresh(patron);
+    }
+
+    private static void writeLoan(DataOutput out, LoanRecord loan) throws IOException {
+        writeUuid(out, loan.getId());
+        writeUuid(out, loan.getItemCopyId());
+        writeUuid(out, loan.getPatronId());
+        writeEpochTime(out, loan.getCheckoutAt());
+        writeEpochTime(out, loan.getDueAt());
+        writeEpochTime(out, loan.getReturnedAt());
+        out.writeDouble(loan.getLateFees());
+        writeEnum(out, loan.getStatus());
+        out.writeByte(accrualCode(loan.getLateFeeAccrual()));
+    }
+
+    private static void readLoan(DataInput in, LibraryState state) throws IOException {
+        UUID id = readUuid(in);
+        UUID copyId = readUuid(in);
+        UUID patronId = readUuid(in);
+        long checkoutAt = readEpochTime(in);
+        long dueAt = readEpochTime(in);
+        long returnedAt = readEpochTime(in);
+        double lateFees = in.readDouble();
+        LoanStatus status = readEnum(in, LoanStatus.values());
+        LateFeeAccrual accrual = accrualFromCode(in.readByte());
+
+        LoanRecord loan = state.getLoans().get(id);
+        if (loan == null) {
+            loan = LoanRecord.builder().id(id).build();
+            state.getLoans().put(id, loan);
+        }
+        // Patron loan sets are not journaled; keep them in step with the loan's owner and status.
+        Patron previous = loan.getPatron();
+        if (previous != null) {
+            previous.getCurrentLoans().remove(loan);
+            previous.getLoanHistory().remove(loan);
+        }
+        loan.setItemCopyRef(EntityRef.lazy(copyId, state.getItemCopies()));
+        loan.setPatronRef(EntityRef.lazy(patronId, state.getPatrons()));
+        loan.setCheckoutAt(checkoutAt);
+        loan.setDueAt(dueAt);
+        loan.setReturnedAt(returnedAt);
+        loan.setLateFees(lateFees);
+        loan.setStatus(status);
+        loan.setLateFeeAccrual(accrual);
+        if (loan.getPatron() != null) {
+            if (status == LoanStatus.ACTIVE) {
+                loan.getPatron().getCurrentLoans().add(loan);
+            } else {
+                loan.getPatron().getLoanHistory().add(loan);
+            }
+        }
+        state.getLoans().refresh(loan);
+    }
+
+    private static void writeReservation(DataOutput out, Reservation reservation) throws IOException {
+        writeUuid(out, reservation.getId());
+        writeUuid(out, reservation.getItemId());
+        writeUuid(out, reservation.getPatronId());
+        writeEpochTime(out, reservation.getReservedAt());
+        writeEpochTime(out, reservation.getExpiresAt());
+        writeEnum(out, reservation.getStatus());
+        out.writeInt(reservation.getQueuePosition());
+        writeUuid(out, reservation.getHeldCopyId());
+    }
+
+    private static void readReservation(DataInput in, LibraryState state) throws IOException {
+        UUID id = readUuid(in);
+        UUID itemId = readUuid(in);
+        UUID patronId = readUuid(in);
+        long reservedAt = readEpochTime(in);
+        long expiresAt = readEpochTime(in);
+        ReservationStatus status = readEnum(in, ReservationStatus.values());
+        int queuePosition = in.readInt();
+        UUID heldCopyId = hasMore(in) ? readUuid(in) : null;
+
+        Reservation reservation = state.getReservations().get(id);
+        if (reservation == null) {
+            reservation = Reservation.builder().id(id).build();
+            state.getReservations().put(id, reservation);
+        }
+        reservation.setItemRef(EntityRef.lazy(itemId, state.getBooks()));
+        reservation.setPatronRef(EntityRef.lazy(patronId, state.getPatrons()));
+        reservation.setReservedAt(reservedAt);
+        reservation.setExpiresAt(expiresAt);
+        reservation.setStatus(status);
+        reservation.setQueuePosition(queuePosition);
+        reservation.setHeldCopyId(heldCopyId);
+        state.getReservations().refresh(reservation);
+    }
+
+    private static byte accrualCode(LateFeeAccrual accrual) {
+        return switch (accrual) {
+            case null -> 0;
+            case DailyLateFeeAccrualImpl ignored -> 1;
+            case WeeklyLateFeeAccrualImpl ignored -> 2;
+            case BiWeeklyLateFeeAccrualImpl ignored -> 3;
+            case MonthlyLateFeeAccrualImpl ignored -> 4;
+            default -> throw new IllegalArgumentException("Unsupported accrual: " + accrual.getClass().getName());
+        };
+    }
+
+    private static LateFeeAccrual accrualFromCode(byte code) {
+        return switch (code) {
+            case 0 -> null;
+            case 1 -> new DailyLateFeeAccrualImpl();
+            case 2 -> new WeeklyLateFeeAccrualImpl();
+            case 3 -> new BiWeeklyLateFeeAccrualImpl();
+            case 4 -> new MonthlyLateFeeAccrualImpl();
+            default -> throw new IllegalArgumentException("Unknown accrual code: " + code);
+        };
+    }
+
+    // UUIDs are two fixed-width longs; the nil UUID stands in for a missing reference.
+    // Records written before a field was added end early; such fields are read only if present.
+    private static boolean hasMore(DataInput in) throws IOException {
+        return in instanceof InputStream stream && stream.available() > 0;
+    }
+
+    static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id == null ? 0L : id.getMostSignificantBits());
+        out.writeLong(id == null ? 0L : id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        return msb == 0L && lsb == 0L ? null : new UUID(msb, lsb);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeTerm(DataOutput out, String value, StringDictionary dictionary) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_TERM);
+            return;
+        }
+        int id = dictionary == null ? -1 : dictionary.idOf(value);
+        if (id < 0) {
+            out.writeInt(INLINE_TERM);
+            writeString(out, value);
+        } else {
+            out.writeInt(id);
+        }
+    }
+
+    static String readTerm(DataInput in, StringDictionary dictionary) throws IOException {
+        int id = in.readInt();
+        return switch (id) {
+            case NULL_TERM -> null;
+            case INLINE_TERM -> readString(in);
+            default -> dictionary.get(id);
+        };
+    }
+
+    static void writeTimestamp(DataOutput out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeLong(NULL_TIMESTAMP);
+            return;
+        }
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    static LocalDateTime readTimestamp(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        if (seconds == NULL_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+    // Same layout as writeTimestamp, so records written before the switch to epoch times still read.
+    static void writeEpochTime(DataOutput out, long nanos) throws IOException {
+        if (nanos == EpochTime.NONE) {
+            out.writeLong(NULL_TIMESTAMP);
+            return;
+        }
+        out.writeLong(EpochTime.seconds(nanos));
+        out.writeInt(EpochTime.nanoOfSecond(nanos));
+    }
+
+    static long readEpochTime(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        if (seconds == NULL_TIMESTAMP) {
+            return EpochTime.NONE;
+        }
+        return EpochTime.ofSeconds(seconds, in.readInt());
+    }
+
+    static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        byte ordinal = in.readByte();
+        return ordinal < 0 ? null : values[ordinal];
+    }
+}
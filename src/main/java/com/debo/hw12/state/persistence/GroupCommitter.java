@@ -0,0 +1,82 @@
+package com.debo.hw12.state.persistence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Shares one fsync between concurrent writers. The first caller that finds no flush in
+// progress becomes the leader: while writers that have appended are still on their way it waits
+// for them, until the batch is full or the max wait has passed, then forces everything appended
+// so far and releases every caller whose record it covered. A writer on its own is forced at once.
+class GroupCommitter {
+    private final MutationJournal journal;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition arrived = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private long durableLsn;
+    private boolean flushing;
+    private int waiting;
+
+    GroupCommitter(MutationJournal journal, int maxBatchSize, long maxWaitMillis) {
+        this.journal = journal;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+    }
+
+    void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            waiting++;
+            arrived.signal();
+            try {
+                while (durableLsn < lsn) {
+                    if (flushing) {
+                        flushed.awaitUninterruptibly();
+                    } else {
+                        lead();
+                    }
+                }
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lead() {
+        flushing = true;
+        try {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            long remaining;
+            while (waiting < maxBatchSize && inFlight() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    arrived.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            long target = journal.lastLsn();
+            lock.unlock();
+            try {
+                journal.force();
+            } finally {
+                lock.lock();
+            }
+            durableLsn = Math.max(durableLsn, target);
+        } finally {
+            flushing = false;
+            flushed.signalAll();
+        }
+    }
+
+    // Writers whose records are appended but who have not come to wait for them yet.
+    private long inFlight() {
+        return journal.lastLsn() - durableLsn - waiting;
+    }
+}
@@ -0,0 +1,153 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.state.IndexedTable;
+
+import java.util.*;
+import java.util.function.Function;
+
+// A LibraryState table whose entries may still live undecoded in a mapped snapshot. Point
+// lookups decode just the record they need; anything that walks the whole table decodes the
+// rest first and then works on plain in-memory entries.
+// Secondary indexes (text, facets, barcodes, copy columns) are fed by decoded entries, not built
+// from the mapped records, so they are not lazy: a query answered from one calls completeIndexes
+// first, and the first such query after a restart pays for decoding whatever is still pending.
+// Startup stays cheap; only id lookups and the ISBN section avoid that decode altogether.
+public abstract class LazyTable<V> extends IndexedTable<V> {
+    private volatile Loader loader;
+
+    public interface Loader {
+        boolean contains(UUID id);
+
+        void load(UUID id);
+
+        void loadAll();
+
+        void discardAll();
+
+        int pendingCount();
+    }
+
+    protected LazyTable(Function<V, UUID> idOf) {
+        super(idOf);
+    }
+
+    public void attach(Loader loader) {
+        this.loader = loader;
+    }
+
+    private void fault(Object key) {
+        Loader current = loader;
+        if (current != null && key instanceof UUID id && peek(id) == null) {
+            current.load(id);
+        }
+    }
+
+    // Decodes every entry still pending in the snapshot.
+    protected void loadPending() {
+        Loader current = loader;
+        if (current != null) {
+            current.loadAll();
+            loader = null;
+        }
+    }
+
+    // Called before answering from a secondary index, so the index covers every entry. Decodes
+    // the pending entries once; afterwards it only reads the detached loader.
+    protected final void completeIndexes() {
+        loadPending();
+    }
+
+    @Override
+    public V get(Object key) {
+        V value = peek(key);
+        if (value != null || loader == null) {
+            return value;
+        }
+        fault(key);
+        return peek(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (peek(key) != null) {
+            return true;
+        }
+        Loader current = loader;
+        return current != null && key instanceof UUID id && current.contains(id);
+    }
+
+    @Override
+    public V put(UUID key, V value) {
+        fault(key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(UUID key, V value) {
+        fault(key);
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        fault(key);
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        fault(key);
+        return super.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(UUID key, V oldValue, V newValue) {
+        fault(key);
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(UUID key, V value) {
+        fault(key);
+        return super.replace(key, value);
+    }
+
+    @Override
+    public int size() {
+        Loader current = loader;
+        return super.size() + (current == null ? 0 : current.pendingCount());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        Loader current = loader;
+        if (current != null) {
+            current.discardAll();
+            loader = null;
+        }
+        super.clear();
+    }
+
+    @Override
+    public Set<Entry<UUID, V>> entrySet() {
+        loadPending();
+        return super.entrySet();
+    }
+
+    @Override
+    public Set<UUID> keySet() {
+        loadPending();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        loadPending();
+        return super.values();
+    }
+}
@@ -0,0 +1,80 @@
+package com.debo.hw12.state.persistence;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Read-only mapping of a whole file. A single MappedByteBuffer stops at 2 GB, so the file is
+// mapped in 1 GB chunks and the rare read that straddles two chunks is assembled byte by byte.
+final class MappedFile {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    static MappedFile map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return new MappedFile(chunks, size);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte getByte(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+    }
+
+    int getInt(long position) {
+        int offset = (int) (position & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Integer.BYTES) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getInt(offset);
+        }
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    long getLong(long position) {
+        int offset = (int) (position & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Long.BYTES) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getLong(offset);
+        }
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    void get(long position, byte[] target) {
+        int copied = 0;
+        while (copied < target.length) {
+            long current = position + copied;
+            MappedByteBuffer chunk = chunks[(int) (current >>> CHUNK_BITS)];
+            int offset = (int) (current & CHUNK_MASK);
+            int length = Math.min(target.length - copied, chunk.capacity() - offset);
+            chunk.get(offset, target, copied, length);
+            copied += length;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.state.LibraryState;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+// Reader for version 2 snapshots. Opening one maps the file, reads the dictionary and decodes
+// patrons, loans and reservations; books and copies stay in the mapping until first touched.
+// A book is decoded together with its copies, which the writer stores next to each other.
+// ISBN lookups binary search the ISBN section, reading each probed string from the mapping.
+final class MappedSnapshot {
+    static final int HEADER_SIZE = 64;
+    static final int BOOK_ENTRY_SIZE = 32;
+    static final int COPY_INDEX_ENTRY_SIZE = 20;
+    static final int COPY_ENTRY_SIZE = 12;
+    static final int ISBN_ENTRY_SIZE = 12;
+
+    private static final byte PENDING = 0;
+    private static final byte DECODING = 1;
+    private static final byte DONE = 2;
+
+    private final MappedFile file;
+    private final LibraryState state;
+    private final long lsn;
+    private final StringDictionary dictionary = new StringDictionary();
+
+    private final long bookEntries;
+    private final int bookCount;
+    private final long copyIndex;
+    private final long copyEntries;
+    private final int copyCount;
+    private final long isbnEntries;
+    private final int isbnCount;
+
+    private final byte[] bookStates;
+    private final byte[] copyStates;
+    private int pendingBooks;
+    private int pendingCopies;
+
+    private MappedSnapshot(MappedFile file, LibraryState state) {
+        this.file = file;
+        this.state = state;
+        this.lsn = file.getLong(8);
+        long dictionaryOffset = file.getLong(16);
+        long bookSection = file.getLong(24);
+        long copySection = file.getLong(32);
+        long isbnSection = file.getLong(48);
+
+        int dictionarySize = file.getInt(dictionaryOffset);
+        long position = dictionaryOffset + Integer.BYTES;
+        for (int i = 0; i < dictionarySize; i++) {
+            byte[] value = new byte[file.getInt(position)];
+            file.get(position + Integer.BYTES, value);
+            dictionary.add(new String(value, StandardCharsets.UTF_8));
+            position += Integer.BYTES + value.length;
+        }
+
+        this.bookCount = file.getInt(bookSection);
+        this.bookEntries = bookSection + Integer.BYTES;
+        this.copyCount = file.getInt(copySection);
+        this.copyIndex = copySection + Integer.BYTES;
+        this.copyEntries = copyIndex + (long) copyCount * COPY_INDEX_ENTRY_SIZE;
+        this.isbnCount = isbnSection == 0 ? -1 : file.getInt(isbnSection);
+        this.isbnEntries = isbnSection + Integer.BYTES;
+
+        this.bookStates = new byte[bookCount];
+        this.copyStates = new byte[copyCount];
+        this.pendingBooks = bookCount;
+        this.pendingCopies = copyCount;
+    }
+
+    static MappedSnapshot open(Path path, LibraryState state) throws IOException {
+        MappedSnapshot snapshot = new MappedSnapshot(MappedFile.map(path), state);
+        state.getBooks().attach(snapshot.bookLoader(), snapshot.isbnCount < 0 ? null : snapshot::findIsbn);
+        state.getItemCopies().attach(snapshot.copyLoader());
+        snapshot.readEagerTables(snapshot.file.getLong(40));
+        return snapshot;
+    }
+
+    long lsn() {
+        return lsn;
+    }
+
+    private void readEagerTables(long position) throws IOException {
+        byte code;
+        while ((code = file.getByte(position++)) != 0) {
+            RecordType type = RecordType.find(code);
+            int count = file.getInt(position);
+            position += Integer.BYTES;
+            for (int i = 0; i < count; i++) {
+                int length = file.getInt(position);
+                if (type != null) {
+                    decode(type, position);
+                }
+                position += Integer.BYTES + length;
+            }
+        }
+    }
+
+    private synchronized void loadBook(int book) {
+        if (bookStates[book] != PENDING) {
+            return;
+        }
+        bookStates[book] = DECODING;
+        pendingBooks--;
+        long entry = bookEntries + (long) book * BOOK_ENTRY_SIZE;
+        decode(RecordType.BOOK, file.getLong(entry + 16));
+        bookStates[book] = DONE;
+
+        int firstCopy = file.getInt(entry + 24);
+        int copies = file.getInt(entry + 28);
+        for (int copy = firstCopy; copy < firstCopy + copies; copy++) {
+            decodeCopy(copy);
+        }
+    }
+
+    private synchronized void loadCopy(int copy) {
+        if (copyStates[copy] != PENDING) {
+            return;
+        }
+        int book = file.getInt(copyEntries + (long) copy * COPY_ENTRY_SIZE + 8);
+        if (book >= 0) {
+            loadBook(book);
+        }
+        decodeCopy(copy);
+    }
+
+    private void decodeCopy(int copy) {
+        if (copyStates[copy] != PENDING) {
+            return;
+        }
+        copyStates[copy] = DECODING;
+        pendingCopies--;
+        decode(RecordType.ITEM_COPY, file.getLong(copyEntries + (long) copy * COPY_ENTRY_SIZE));
+        copyStates[copy] = DONE;
+    }
+
+    private void decode(RecordType type, long position) {
+        byte[] record = new byte[file.getInt(position)];
+        file.get(position + Integer.BYTES, record);
+        try {
+            EntityCodec.apply(type, new DataInputStream(new ByteArrayInputStream(record)), state, dictionary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt snapshot record", e);
+        }
+    }
+
+    private int findBook(UUID id) {
+        return search(bookEntries, BOOK_ENTRY_SIZE, bookCount, id);
+    }
+
+    private int findCopy(UUID id) {
+        int index = search(copyIndex, COPY_INDEX_ENTRY_SIZE, copyCount, id);
+        return index < 0 ? -1 : file.getInt(copyIndex + (long) index * COPY_INDEX_ENTRY_SIZE + 16);
+    }
+
+    private UUID findIsbn(String isbn) {
+        int low = 0;
+        int high = isbnCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = isbnEntries + (long) mid * ISBN_ENTRY_SIZE;
+            long position = file.getLong(entry);
+            byte[] value = new byte[file.getInt(position)];
+            file.get(position + Integer.BYTES, value);
+            int compare = new String(value, StandardCharsets.UTF_8).compareTo(isbn);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                long book = bookEntries + (long) file.getInt(entry + 8) * BOOK_ENTRY_SIZE;
+                return new UUID(file.getLong(book), file.getLong(book + 8));
+            }
+        }
+        return null;
+    }
+
+    // Binary search over fixed-width entries that start with the id's two longs.
+    private int search(long start, int entrySize, int count, UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = start + (long) mid * entrySize;
+            int compare = Long.compare(file.getLong(entry), msb);
+            if (compare == 0) {
+                compare = Long.compare(file.getLong(entry + 8), lsb);
+            }
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private LazyTable.Loader bookLoader() {
+        return new LazyTable.Loader() {
+            @Override
+            public boolean contains(UUID id) {
+                int book = findBook(id);
+                synchronized (MappedSnapshot.this) {
+                    return book >= 0 && bookStates[book] == PENDING;
+                }
+            }
+
+            @Override
+            public void load(UUID id) {
+                int book = findBook(id);
+                if (book >= 0) {
+                    loadBook(book);
+                }
+            }
+
+            @Override
+            public void loadAll() {
+                for (int book = 0; book < bookCount; book++) {
+                    loadBook(book);
+                }
+            }
+
+            @Override
+            public void discardAll() {
+                synchronized (MappedSnapshot.this) {
+                    Arrays.fill(bookStates, DONE);
+                    pendingBooks = 0;
+                }
+            }
+
+            @Override
+            public int pendingCount() {
+                synchronized (MappedSnapshot.this) {
+                    return pendingBooks;
+                }
+            }
+        };
+    }
+
+    private LazyTable.Loader copyLoader() {
+        return new LazyTable.Loader() {
+            @Override
+            public boolean contains(UUID id) {
+                int copy = findCopy(id);
+                synchronized (MappedSnapshot.this) {
+                    return copy >= 0 && copyStates[copy] == PENDING;
+                }
+            }
+
+            @Override
+            public void load(UUID id) {
+                int copy = findCopy(id);
+                if (copy >= 0) {
+                    loadCopy(copy);
+                }
+            }
+
+            @Override
+            public void loadAll() {
+                for (int copy = 0; copy < copyCount; copy++) {
+                    loadCopy(copy);
+                }
+            }
+
+            @Override
+            public void discardAll() {
+                synchronized (MappedSnapshot.this) {
+                    Arrays.fill(copyStates, DONE);
+                    pendingCopies = 0;
+                }
+            }
+
+            @Override
+            public int pendingCount() {
+                synchronized (MappedSnapshot.this) {
+                    return pendingCopies;
+                }
+            }
+        };
+    }
+}
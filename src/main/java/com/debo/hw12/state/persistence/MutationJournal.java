@@ -0,0 +1,258 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.state.LibraryState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only log of entity after-images. Every mutation is one framed record:
+// [int payloadLength][long lsn][payload][int crc32c(lsn + payload)], where the payload is a
+// sequence of [byte type][int length][entity bytes]. The log is split into segments named by
+// the first lsn they hold so that segments covered by a snapshot can be dropped whole.
+public class MutationJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final SyncMode syncMode;
+    private final GroupCommitter groupCommitter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    private long lastLsn;
+
+    private MutationJournal(Path directory, SyncMode syncMode, int maxBatchSize, long maxWaitMillis) {
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.groupCommitter = new GroupCommitter(this, maxBatchSize, maxWaitMillis);
+    }
+
+    public static MutationJournal open(Path directory, SyncMode syncMode, int maxBatchSize, long maxWaitMillis) throws IOException {
+        Files.createDirectories(directory);
+        MutationJournal journal = new MutationJournal(directory, syncMode, maxBatchSize, maxWaitMillis);
+        List<Path> segments = journal.segments();
+        if (segments.isEmpty()) {
+            journal.lastLsn = 0;
+            journal.channel = journal.openSegment(1);
+        } else {
+            Path tail = segments.getLast();
+            journal.lastLsn = journal.recoverTail(tail);
+            journal.channel = FileChannel.open(tail, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return journal;
+    }
+
+    // Encoding happens under the lock with the lsn, so of two records holding the same entity the
+    // later lsn always carries the later image.
+    public long append(Collection<?> entities) {
+        lock.lock();
+        try {
+            byte[] payload = encode(entities);
+            long lsn = lastLsn + 1;
+            ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length + Integer.BYTES);
+            frame.putInt(payload.length).putLong(lsn).put(payload).putInt(checksum(lsn, payload));
+            frame.flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            lastLsn = lsn;
+            return lsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to mutation journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until the record with the given lsn is on stable storage, as the sync mode requires.
+    public void sync(long lsn) {
+        switch (syncMode) {
+            case NONE -> {
+            }
+            case ALWAYS -> force();
+            case GROUP -> groupCommitter.awaitDurable(lsn);
+        }
+    }
+
+    void force() {
+        FileChannel current;
+        lock.lock();
+        try {
+            current = channel;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            current.force(false);
+        } catch (ClosedChannelException e) {
+            // The segment was rolled, and rolling forces it before closing.
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync mutation journal", e);
+        }
+    }
+
+    public long lastLsn() {
+        lock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Starts a new segment and returns the last lsn written to the previous ones.
+    public long roll() {
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            channel = openSegment(lastLsn + 1);
+            return lastLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll mutation journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void replay(long afterLsn, LibraryState state) throws IOException {
+        for (Path segment : segments()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                byte[] payload;
+                long[] lsn = new long[1];
+                while ((payload = readFrame(in, lsn)) != null) {
+                    if (lsn[0] > afterLsn) {
+                        applyPayload(payload, state);
+                    }
+                }
+            }
+        }
+    }
+
+    // Deletes every segment whose records are all at or below the given lsn.
+    public void discardUpTo(long lsn) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 <= lsn) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static byte[] encode(Collection<?> entities) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream entityBytes = new ByteArrayOutputStream();
+            DataOutputStream entityOut = new DataOutputStream(entityBytes);
+            for (Object entity : entities) {
+                entityBytes.reset();
+                EntityCodec.write(entityOut, entity, null);
+                out.writeByte(EntityCodec.typeOf(entity).code());
+                out.writeInt(entityBytes.size());
+                entityBytes.writeTo(out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void applyPayload(byte[] payload, LibraryState state) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        while (in.available() > 0) {
+            RecordType type = RecordType.fromCode(in.readByte());
+            byte[] entity = new byte[in.readInt()];
+            in.readFully(entity);
+            EntityCodec.apply(type, new DataInputStream(new ByteArrayInputStream(entity)), state, null);
+        }
+    }
+
+    // Returns null at the end of the segment or at the first torn or corrupt frame.
+    private static byte[] readFrame(DataInputStream in, long[] lsn) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                return null;
+            }
+            lsn[0] = in.readLong();
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            int crc = in.readInt();
+            return crc == checksum(lsn[0], payload) ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Finds the last intact record of the newest segment and cuts off anything after it,
+    // which is what a crash in the middle of an append leaves behind.
+    private long recoverTail(Path segment) throws IOException {
+        long lsn = firstLsn(segment) - 1;
+        long validEnd = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            byte[] payload;
+            long[] frameLsn = new long[1];
+            while ((payload = readFrame(in, frameLsn)) != null) {
+                lsn = frameLsn[0];
+                validEnd += HEADER_SIZE + payload.length + Integer.BYTES;
+            }
+        }
+        if (Files.size(segment) > validEnd) {
+            try (FileChannel truncate = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                truncate.truncate(validEnd);
+            }
+        }
+        return lsn;
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(long lsn, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, lsn));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,37 @@
+package com.debo.hw12.state.persistence;
+
+public enum RecordType {
+    BOOK(1),
+    ITEM_COPY(2),
+    PATRON(3),
+    LOAN(4),
+    RESERVATION(5);
+
+    private final byte code;
+
+    RecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static RecordType fromCode(byte code) {
+        RecordType type = find(code);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown record type: " + code);
+        }
+        return type;
+    }
+
+    // Returns null for codes written by a newer version of the format.
+    public static RecordType find(byte code) {
+        for (RecordType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.model.Book;
+import com.debo.hw12.state.LibraryState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Point-in-time image of LibraryState as of a journal lsn, taken while mutations keep running.
+// The capture starts at an epoch boundary with no mutation open. From then on each entity is
+// encoded exactly once: either by the writer walking the tables, or by the first mutation that
+// touches it, which encodes it before changing anything. Entities created after the boundary
+// are marked absent so the image never contains them.
+public final class SnapshotCapture {
+    private static final byte[] ABSENT = new byte[0];
+
+    private final LibraryState state;
+    private final long lsn;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final Map<RecordType, ConcurrentHashMap<UUID, byte[]>> images = new EnumMap<>(RecordType.class);
+    // The ISBN each book image was encoded with, for the snapshot's ISBN section.
+    private final ConcurrentHashMap<UUID, String> isbns = new ConcurrentHashMap<>();
+
+    public SnapshotCapture(LibraryState state, long lsn) {
+        this.state = state;
+        this.lsn = lsn;
+        for (RecordType type : RecordType.values()) {
+            images.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    public long lsn() {
+        return lsn;
+    }
+
+    // Called from Mutation.touch before the entity changes.
+    public void preserve(Object entity) {
+        RecordType type = EntityCodec.typeOf(entity);
+        UUID id = EntityCodec.idOf(entity);
+        images.get(type).computeIfAbsent(id, key -> table(type).get(key) == entity ? encode(entity) : ABSENT);
+    }
+
+    // Walks every table, encoding whatever no mutation has preserved yet. An entity removed
+    // after the boundary was touched first, so its image is already here.
+    public void collect() {
+        for (RecordType type : RecordType.values()) {
+            ConcurrentHashMap<UUID, byte[]> typeImages = images.get(type);
+            for (Object entity : table(type).values()) {
+                typeImages.computeIfAbsent(EntityCodec.idOf(entity), key -> encode(entity));
+            }
+        }
+    }
+
+    StringDictionary dictionary() {
+        return dictionary;
+    }
+
+    Map<UUID, byte[]> images(RecordType type) {
+        Map<UUID, byte[]> present = new HashMap<>();
+        images.get(type).forEach((id, image) -> {
+            if (image != ABSENT) {
+                present.put(id, image);
+            }
+        });
+        return present;
+    }
+
+    Map<UUID, String> isbns() {
+        return isbns;
+    }
+
+    private byte[] encode(Object entity) {
+        if (entity instanceof Book book) {
+            EntityCodec.collectTerms(book, dictionary);
+            if (book.getIsbn() != null) {
+                isbns.put(book.getId(), book.getIsbn());
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            EntityCodec.write(new DataOutputStream(bytes), entity, dictionary);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Map<UUID, ?> table(RecordType type) {
+        return switch (type) {
+            case BOOK -> state.getBooks();
+            case ITEM_COPY -> state.getItemCopies();
+            case PATRON -> state.getPatrons();
+            case LOAN -> state.getLoans();
+            case RESERVATION -> state.getReservations();
+        };
+    }
+}
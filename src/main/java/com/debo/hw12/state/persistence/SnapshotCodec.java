@@ -0,0 +1,263 @@
+package com.debo.hw12.state.persistence;
+
+import com.debo.hw12.state.LibraryState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Versioned binary snapshot of LibraryState. Every record carries its length, so readers skip
+// fields appended by newer versions and whole tables of types they do not know.
+//
+// Version 1 is a stream: header (int magic, short version, long lsn), the string dictionary,
+// then { byte type, int count, { int length, entity bytes } } per table and a 0 byte.
+//
+// Version 2 is laid out for mapping. A 64 byte header holds the lsn and the offsets of the
+// dictionary, the book section, the copy section, the remaining tables and the ISBN section.
+// Book records are sorted by id and each is followed by its copies. The book section is a table
+// of (msb, lsb, record offset, first copy, copy count) in id order; the copy section is an id
+// index of (msb, lsb, ordinal) followed by (record offset, book ordinal) per copy. The ISBN
+// section is a table of (string offset, book ordinal) in ISBN order, its strings written just
+// before it; files written without one have a 0 offset. Patrons, loans and reservations use the
+// version 1 table layout. Records come pre-encoded from a SnapshotCapture, and the dictionary is
+// written last since the capture may still grow it.
+public final class SnapshotCodec {
+    private static final int MAGIC = 0x4C494253;
+    static final short FORMAT_VERSION = 2;
+    private static final byte END_OF_TABLES = 0;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Comparator<UUID> ID_ORDER = Comparator
+            .comparingLong(UUID::getMostSignificantBits)
+            .thenComparingLong(UUID::getLeastSignificantBits);
+
+    private SnapshotCodec() {}
+
+    public static void write(Path file, SnapshotCapture capture) throws IOException {
+        Map<UUID, byte[]> bookImages = capture.images(RecordType.BOOK);
+        List<UUID> books = new ArrayList<>(bookImages.keySet());
+        books.sort(ID_ORDER);
+
+        Map<UUID, Integer> bookOrdinals = new HashMap<>();
+        List<List<UUID>> copiesByBook = new ArrayList<>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            bookOrdinals.put(books.get(i), i);
+            copiesByBook.add(new ArrayList<>());
+        }
+        Map<UUID, byte[]> copyImages = capture.images(RecordType.ITEM_COPY);
+        List<UUID> orphanCopies = new ArrayList<>();
+        copyImages.forEach((id, image) -> {
+            Integer book = bookOrdinals.get(bookIdOf(image));
+            if (book == null) {
+                orphanCopies.add(id);
+            } else {
+                copiesByBook.get(book).add(id);
+            }
+        });
+
+        try (FileOutputStream stream = new FileOutputStream(file.toFile());
+             CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            out.write(new byte[MappedSnapshot.HEADER_SIZE]);
+
+            RecordWriter records = new RecordWriter(out, counter);
+            long[] bookOffsets = new long[books.size()];
+            int[] firstCopies = new int[books.size()];
+            List<UUID> copies = new ArrayList<>();
+            List<Integer> copyBooks = new ArrayList<>();
+            List<Long> copyOffsets = new ArrayList<>();
+            for (int i = 0; i < books.size(); i++) {
+                bookOffsets[i] = records.write(bookImages.get(books.get(i)));
+                firstCopies[i] = copies.size();
+                for (UUID copy : copiesByBook.get(i)) {
+                    copies.add(copy);
+                    copyBooks.add(i);
+                    copyOffsets.add(records.write(copyImages.get(copy)));
+                }
+            }
+            for (UUID copy : orphanCopies) {
+                copies.add(copy);
+                copyBooks.add(-1);
+                copyOffsets.add(records.write(copyImages.get(copy)));
+            }
+
+            long bookSection = counter.position;
+            out.writeInt(books.size());
+            for (int i = 0; i < books.size(); i++) {
+                EntityCodec.writeUuid(out, books.get(i));
+                out.writeLong(bookOffsets[i]);
+                out.writeInt(firstCopies[i]);
+                out.writeInt(copiesByBook.get(i).size());
+            }
+
+            long copySection = counter.position;
+            Integer[] byId = new Integer[copies.size()];
+            for (int i = 0; i < byId.length; i++) {
+                byId[i] = i;
+            }
+            Arrays.sort(byId, Comparator.comparing(copies::get, ID_ORDER));
+            out.writeInt(copies.size());
+            for (int ordinal : byId) {
+                EntityCodec.writeUuid(out, copies.get(ordinal));
+                out.writeInt(ordinal);
+            }
+            for (int i = 0; i < copies.size(); i++) {
+                out.writeLong(copyOffsets.get(i));
+                out.writeInt(copyBooks.get(i));
+            }
+
+            List<UUID> isbnBooks = new ArrayList<>();
+            for (UUID book : books) {
+                if (capture.isbns().containsKey(book)) {
+                    isbnBooks.add(book);
+                }
+            }
+            isbnBooks.sort(Comparator.comparing(capture.isbns()::get));
+            long[] isbnOffsets = new long[isbnBooks.size()];
+            for (int i = 0; i < isbnOffsets.length; i++) {
+                isbnOffsets[i] = records.write(capture.isbns().get(isbnBooks.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            long isbnSection = counter.position;
+            out.writeInt(isbnBooks.size());
+            for (int i = 0; i < isbnOffsets.length; i++) {
+                out.writeLong(isbnOffsets[i]);
+                out.writeInt(bookOrdinals.get(isbnBooks.get(i)));
+            }
+
+            long tablesOffset = counter.position;
+            writeTable(out, RecordType.PATRON, capture.images(RecordType.PATRON).values());
+            writeTable(out, RecordType.LOAN, capture.images(RecordType.LOAN).values());
+            writeTable(out, RecordType.RESERVATION, capture.images(RecordType.RESERVATION).values());
+            out.writeByte(END_OF_TABLES);
+
+            long dictionaryOffset = counter.position;
+            List<String> dictionary = capture.dictionary().values();
+            out.writeInt(dictionary.size());
+            for (String value : dictionary) {
+                EntityCodec.writeString(out, value);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(MappedSnapshot.HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putShort(FORMAT_VERSION)
+                    .putShort((short) 0)
+                    .putLong(capture.lsn())
+                    .putLong(dictionaryOffset)
+                    .putLong(bookSection)
+                    .putLong(copySection)
+                    .putLong(tablesOffset)
+                    .putLong(isbnSection);
+            header.rewind();
+            while (header.hasRemaining()) {
+                stream.getChannel().write(header, header.position());
+            }
+            stream.getFD().sync();
+        }
+    }
+
+    // A copy record starts with its own id followed by the id of its book.
+    private static UUID bookIdOf(byte[] copyImage) {
+        ByteBuffer image = ByteBuffer.wrap(copyImage);
+        long msb = image.getLong(16);
+        long lsb = image.getLong(24);
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    // Loads the snapshot into the given state and returns the journal lsn it covers,
+    // or 0 when there is no snapshot yet.
+    public static long read(Path file, LibraryState state) throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return 0;
+        }
+        short version;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a library snapshot: " + file);
+            }
+            version = in.readShort();
+        }
+        return switch (version) {
+            case 1 -> readStream(file, state);
+            case 2 -> MappedSnapshot.open(file, state).lsn();
+            default -> throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        };
+    }
+
+    private static long readStream(Path file, LibraryState state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            in.readInt();
+            in.readShort();
+            long lsn = in.readLong();
+
+            StringDictionary dictionary = new StringDictionary();
+            int dictionarySize = in.readInt();
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary.add(EntityCodec.readString(in));
+            }
+
+            byte code;
+            while ((code = in.readByte()) != END_OF_TABLES) {
+                RecordType type = RecordType.find(code);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    if (type != null) {
+                        EntityCodec.apply(type, new DataInputStream(new ByteArrayInputStream(record)), state, dictionary);
+                    }
+                }
+            }
+            return lsn;
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, RecordType type, Collection<byte[]> images) throws IOException {
+        out.writeByte(type.code());
+        out.writeInt(images.size());
+        for (byte[] image : images) {
+            out.writeInt(image.length);
+            out.write(image);
+        }
+    }
+
+    private static final class RecordWriter {
+        private final DataOutputStream out;
+        private final CountingOutputStream counter;
+
+        RecordWriter(DataOutputStream out, CountingOutputStream counter) {
+            this.out = out;
+            this.counter = counter;
+        }
+
+        // Writes one length-prefixed record and returns the offset it starts at.
+        long write(byte[] image) throws IOException {
+            long offset = counter.position;
+            out.writeInt(image.length);
+            out.write(image);
+            return offset;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long position;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+}
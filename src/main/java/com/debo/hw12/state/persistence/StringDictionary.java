@@ -0,0 +1,37 @@
+package com.debo.hw12.state.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Snapshot-wide table of repeated strings (authors, publishers, genres), written once and
+// referenced from records by index. A snapshot capture grows it from several threads.
+public class StringDictionary {
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public synchronized int add(String value) {
+        return ids.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+
+    // Returns -1 for values that were not collected up front.
+    public synchronized int idOf(String value) {
+        return ids.getOrDefault(value, -1);
+    }
+
+    public synchronized String get(int id) {
+        return values.get(id);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    synchronized List<String> values() {
+        return new ArrayList<>(values);
+    }
+}
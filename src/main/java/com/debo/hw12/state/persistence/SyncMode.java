@@ -0,0 +1,10 @@
+package com.debo.hw12.state.persistence;
+
+public enum SyncMode {
+    // Records reach the OS page cache only; a process crash is safe, a power loss is not.
+    NONE,
+    // Every mutation forces the journal before it returns.
+    ALWAYS,
+    // Concurrent mutations wait for a shared force of the journal.
+    GROUP
+}
@@ -7,6 +7,7 @@ import com.debo.hw12.enums.Condition;
 import com.debo.hw12.enums.ItemStatus;
 import com.debo.hw12.enums.ItemType;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -67,12 +68,16 @@ public class Seeder {
 
         for (int i = 0; i < 10; i++) {
             Book book = createBook(i);
-            libraryState.getBooks().put(book.getId(), book);
-
-            for (int j = 0; j < 20; j++) {
-                ItemCopy copy = createCopy(book, j);
-                libraryState.getItemCopies().put(copy.getId(), copy);
-                logger.debug(String.format("Created copy %d for book: %s", j + 1, book.getTitle()));
+            try (Mutation mutation = libraryState.beginMutation()) {
+                mutation.touch(book);
+                libraryState.getBooks().put(book.getId(), book);
+
+                for (int j = 0; j < 20; j++) {
+                    ItemCopy copy = createCopy(book, j);
+                    mutation.touch(copy);
+                    libraryState.getItemCopies().put(copy.getId(), copy);
+                    logger.debug(String.format("Created copy %d for book: %s", j + 1, book.getTitle()));
+                }
             }
 
             logger.info(String.format("Created book with 20 copies: %s", book.getTitle()));
@@ -0,0 +1,85 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.enums.LoanStatus;
+import com.debo.hw12.exception.DuplicateEntityException;
+import com.debo.hw12.exception.ValidationException;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.LoanRecord;
+import com.debo.hw12.service.impl.AutocompleteServiceImpl;
+import com.debo.hw12.service.impl.BookServiceImpl;
+import com.debo.hw12.state.LibraryState;
+import org.junit.jupiter.api.*;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Autocomplete Tests")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class AutocompleteTest {
+
+    private LibraryState libraryState;
+    private BookServiceImpl bookService;
+    private AutocompleteServiceImpl autocompleteService;
+
+    @BeforeEach
+    void setUp() throws DuplicateEntityException, ValidationException {
+        libraryState = LibraryState.getInstance();
+        libraryState.getBooks().clear();
+        libraryState.getItemCopies().clear();
+        libraryState.getLoans().clear();
+        bookService = new BookServiceImpl();
+        autocompleteService = new AutocompleteServiceImpl();
+
+        lend(bookService.createBook("Refactoring", "111", "Martin Fowler"), 1);
+        lend(bookService.createBook("Release It!", "222", "Michael Nygard"), 5);
+        lend(bookService.createBook("Reflections on Trusting Trust", "333", "Ken Thompson"), 0);
+        lend(bookService.createBook("Patterns of Enterprise Application Architecture", "444", "Martin Fowler"), 2);
+    }
+
+    private void lend(Book book, int times) {
+        ItemCopy copy = new ItemCopy(book, book.getIsbn() + "-1", "SHELF-A");
+        libraryState.getItemCopies().put(copy.getId(), copy);
+        for (int i = 0; i < times; i++) {
+            LoanRecord loan = LoanRecord.builder()
+                    .id(UUID.randomUUID())
+                    .itemCopy(copy)
+                    .status(LoanStatus.RETURNED)
+                    .build();
+            libraryState.getLoans().put(loan.getId(), loan);
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should rank completions by circulation")
+    void shouldRankByCirculation() {
+        assertThat(autocompleteService.suggest("re", 10))
+                .containsExactly("Release It!", "Refactoring", "Reflections on Trusting Trust");
+        assertThat(autocompleteService.suggest("RE", 2)).containsExactly("Release It!", "Refactoring");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should complete inner words and merge repeated authors")
+    void shouldCompleteWordStarts() {
+        assertThat(autocompleteService.suggest("fowl", 10)).containsExactly("Martin Fowler");
+        assertThat(autocompleteService.suggest("mar", 10)).containsExactly("Martin Fowler");
+        assertThat(autocompleteService.suggest("trust", 10)).containsExactly("Reflections on Trusting Trust");
+        assertThat(autocompleteService.suggest("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should pick up catalog changes on rebuild")
+    void shouldRebuild() throws DuplicateEntityException, ValidationException {
+        assertThat(autocompleteService.suggest("dom", 10)).isEmpty();
+
+        bookService.createBook("Domain-Driven Design", "555", "Eric Evans");
+        autocompleteService.rebuild();
+
+        assertThat(autocompleteService.suggest("dom", 10)).containsExactly("Domain-Driven Design");
+        assertThat(autocompleteService.suggest("driven", 10)).containsExactly("Domain-Driven Design");
+    }
+}
@@ -6,14 +6,21 @@ import com.debo.hw12.exception.ValidationException;
 import com.debo.hw12.model.Book;
 import com.debo.hw12.service.impl.BookServiceImpl;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -120,6 +127,42 @@ class BookTest {
                     .isInstanceOf(ValidationException.class)
                     .hasMessageContaining("Invalid condition");
         }
+
+        @Test
+        @Order(3)
+        @DisplayName("Should let only one concurrent create claim an ISBN")
+        void shouldRejectConcurrentDuplicateIsbn() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<Book>> attempts = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String title = "Copy " + i;
+                attempts.add(executor.submit(() -> {
+                    try {
+                        return bookService.createBook(title, "978-DUP", "Author");
+                    } catch (DuplicateEntityException e) {
+                        return null;
+                    } catch (ValidationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            List<Book> created = new ArrayList<>();
+            int duplicates = 0;
+            for (Future<Book> attempt : attempts) {
+                Book book = attempt.get(30, TimeUnit.SECONDS);
+                if (book == null) {
+                    duplicates++;
+                } else {
+                    created.add(book);
+                }
+            }
+            executor.shutdown();
+
+            assertThat(created).hasSize(1);
+            assertThat(duplicates).isEqualTo(7);
+            assertThat(bookService.findByIsbn("978-DUP")).contains(created.get(0));
+            assertThat(bookService.findByIsbn("978-NONE")).isEmpty();
+        }
     }
 
     @Nested
@@ -168,6 +211,86 @@ class BookTest {
             List<Book> books = bookService.searchBooks("title", "NonExistent");
             assertThat(books).isEmpty();
         }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should find books by genre and share repeated strings")
+        void shouldFindBooksByGenre() throws DuplicateEntityException, ValidationException {
+            Book animalFarm = bookService.createBook("Animal Farm", "978-4", new String("George Orwell"),
+                    "Secker", "1945", Set.of("Satire", "Fiction"), "GOOD");
+            Book homage = bookService.createBook("Homage to Catalonia", "978-5", "George Orwell",
+                    new String("Secker"), "1938", Set.of("Memoir"), "GOOD");
+            try (Mutation mutation = libraryState.beginMutation()) {
+                mutation.touch(animalFarm);
+                animalFarm.addGenre("Political");
+                animalFarm.removeGenre("Fiction");
+            }
+
+            assertThat(bookService.searchBooks("genre", "Satire")).containsExactly(animalFarm);
+            assertThat(bookService.searchBooks("genre", "Fiction")).isEmpty();
+            assertThat(bookService.searchBooks("genre", "Unknown")).isEmpty();
+            assertThat(animalFarm.hasGenre("Political")).isTrue();
+            assertThat(animalFarm.getGenres()).containsExactlyInAnyOrder("Satire", "Political");
+            assertThat(animalFarm.getAuthor()).isSameAs(homage.getAuthor());
+            assertThat(animalFarm.getPublisher()).isSameAs(homage.getPublisher());
+        }
+
+        @Test
+        @Order(6)
+        @DisplayName("Should match substring scans after updates and deletes")
+        void shouldMatchSubstringScan() throws DuplicateEntityException, ValidationException {
+            Random random = new Random(7);
+            String[] words = {"Data", "Design", "Patterns", "the", "Art", "of", "Computer", "Programming", "Systems"};
+            List<Book> created = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                created.add(bookService.createBook(title, "979-" + i, words[random.nextInt(words.length)] + " Author"));
+            }
+            for (int i = 0; i < 50; i++) {
+                Book book = created.get(random.nextInt(created.size()));
+                bookService.updateBook(book.getId(), words[random.nextInt(words.length)] + " Revised", book.getAuthor());
+            }
+            bookService.deleteBook(created.get(0).getId());
+
+            for (String term : List.of("a", "de", "des", "ART", "sign pat", "revised", "ing syst", "zzz")) {
+                String normalized = term.toLowerCase();
+                assertThat(bookService.searchBooks("title", term)).containsExactlyInAnyOrderElementsOf(
+                        bookService.getAllBooks().stream()
+                                .filter(book -> book.getTitle().toLowerCase().contains(normalized))
+                                .filter(Book::isActive)
+                                .toList());
+                assertThat(bookService.searchBooks("author", term)).containsExactlyInAnyOrderElementsOf(
+                        bookService.getAllBooks().stream()
+                                .filter(book -> book.getAuthor().toLowerCase().contains(normalized))
+                                .filter(Book::isActive)
+                                .toList());
+            }
+        }
+
+        @Test
+        @Order(7)
+        @DisplayName("Should find misspelled titles and authors")
+        void shouldFindMisspellings() throws DuplicateEntityException, ValidationException {
+            Book taocp = bookService.createBook("The Art of Computer Programming", "978-6", "Donald Knuth");
+            Book refactoring = bookService.createBook("Refactoring", "978-7", "Martin Fowler");
+
+            assertThat(bookService.fuzzySearch("Knuht")).containsExactly(taocp);
+            assertThat(bookService.fuzzySearch("Fowlr")).containsExactly(refactoring);
+            assertThat(bookService.searchBooks("fuzzy", "martn fowler")).containsExactly(refactoring);
+            assertThat(bookService.fuzzySearch("Orwel")).extracting(Book::getAuthor).containsExactly("George Orwell");
+            assertThat(bookService.fuzzySearch("Knxxxh")).isEmpty();
+
+            bookService.updateBook(refactoring.getId(), "Refactoring", "Kent Beck");
+            bookService.deleteBook(taocp.getId());
+
+            assertThat(bookService.fuzzySearch("Fowlr")).isEmpty();
+            assertThat(bookService.fuzzySearch("Knuht")).isEmpty();
+            assertThat(bookService.fuzzySearch("Bekc")).containsExactly(refactoring);
+
+            bookService.updateBook(refactoring.getId(), "Refactoring", null);
+            assertThat(bookService.fuzzySearch("null")).isEmpty();
+            assertThat(bookService.fuzzySearch("Refactorng")).containsExactly(refactoring);
+        }
     }
 
     @Nested
@@ -0,0 +1,149 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.exception.DuplicateEntityException;
+import com.debo.hw12.exception.ValidationException;
+import com.debo.hw12.enums.Condition;
+import com.debo.hw12.enums.Facet;
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.enums.ItemType;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.FacetQuery;
+import com.debo.hw12.model.FacetResult;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.SearchHit;
+import com.debo.hw12.service.impl.BookServiceImpl;
+import com.debo.hw12.service.impl.CatalogSearchServiceImpl;
+import com.debo.hw12.state.LibraryState;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Catalog Search Tests")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class CatalogSearchTest {
+
+    private BookServiceImpl bookService;
+    private CatalogSearchServiceImpl searchService;
+    private Book refactoring;
+    private Book patterns;
+    private Book garcia;
+
+    @BeforeEach
+    void setUp() throws DuplicateEntityException, ValidationException {
+        LibraryState.getInstance().getBooks().clear();
+        LibraryState.getInstance().getItemCopies().clear();
+        bookService = new BookServiceImpl();
+        searchService = new CatalogSearchServiceImpl();
+
+        refactoring = bookService.createBook("Refactoring", "111", "Martin Fowler", "Addison-Wesley",
+                "1999", Set.of("Software Engineering"), "GOOD");
+        patterns = bookService.createBook("Design Patterns", "222", "Erich Gamma", "Addison-Wesley",
+                "1994", Set.of("Software Engineering", "Design Patterns"), "GOOD");
+        patterns.setDescription("Catalog of patterns, including ones useful when refactoring");
+        bookService.updateBook(patterns.getId(), patterns.getTitle(), patterns.getAuthor());
+        garcia = bookService.createBook("Cien años de soledad", "333", "Gabriel García Márquez", "Sudamericana",
+                "1967", Set.of("Fiction"), "GOOD");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should rank title matches above description matches")
+    void shouldRankByFieldBoost() {
+        List<SearchHit> hits = searchService.search("refactoring", 10);
+
+        assertThat(hits).extracting(SearchHit::getBook).containsExactly(refactoring, patterns);
+        assertThat(hits.get(0).getScore()).isGreaterThan(hits.get(1).getScore());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should fold case and accents")
+    void shouldFoldCaseAndAccents() {
+        assertThat(searchService.search("GARCIA anos", 10)).extracting(SearchHit::getBook).containsExactly(garcia);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should return only the top hits and skip deleted books")
+    void shouldLimitAndSkipDeleted() {
+        assertThat(searchService.search("addison wesley", 1)).hasSize(1);
+
+        bookService.deleteBook(refactoring.getId());
+
+        assertThat(searchService.search("fowler", 10)).isEmpty();
+        assertThat(searchService.search("refactoring", 10)).extracting(SearchHit::getBook).containsExactly(patterns);
+        assertThat(searchService.search("  ", 10)).isEmpty();
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Should intersect facets, union values within one and count over the matches")
+    void shouldFilterByBookFacets() throws ValidationException {
+        bookService.updateBook(garcia.getId(), garcia.getTitle(), garcia.getAuthor(), garcia.getPublisher(),
+                garcia.getPublicationYear(), garcia.getGenres(), Condition.FAIR);
+
+        FacetResult engineering = searchService.facet(FacetQuery.builder()
+                .genres(Set.of("Software Engineering")).maxYear(1995).build());
+        assertThat(engineering.getBooks()).containsExactly(patterns);
+        assertThat(engineering.getCounts().get(Facet.GENRE))
+                .isEqualTo(Map.of("Software Engineering", 1, "Design Patterns", 1));
+
+        FacetResult either = searchService.facet(FacetQuery.builder()
+                .genres(Set.of("Fiction", "Design Patterns")).build());
+        assertThat(either.getBooks()).containsExactlyInAnyOrder(patterns, garcia);
+        assertThat(either.getCounts().get(Facet.CONDITION)).isEqualTo(Map.of("GOOD", 1, "FAIR", 1));
+        assertThat(either.getCounts().get(Facet.YEAR)).isEqualTo(Map.of("1994", 1, "1967", 1));
+
+        bookService.deleteBook(patterns.getId());
+
+        assertThat(searchService.facet(FacetQuery.builder().build()).getBooks())
+                .containsExactlyInAnyOrder(refactoring, garcia);
+        assertThat(searchService.facet(FacetQuery.builder().minYear(1990).maxYear(1980).build()).getBooks())
+                .isEmpty();
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Should filter books by the type and status of their copies")
+    void shouldFilterByCopyFacets() {
+        LibraryState libraryState = LibraryState.getInstance();
+        // Enough copies for one bitmap chunk to switch from a sorted array to a bitset.
+        List<ItemCopy> copies = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ItemCopy copy = new ItemCopy(refactoring, "RF" + i, "SHELF-A");
+            copy.setType(ItemType.HARD_COVER);
+            libraryState.getItemCopies().put(copy.getId(), copy);
+            copies.add(copy);
+        }
+        ItemCopy audio = new ItemCopy(patterns, "DP0", "SHELF-B");
+        audio.setType(ItemType.AUDIO_BOOK);
+        audio.setStatus(ItemStatus.CHECKED_OUT);
+        libraryState.getItemCopies().put(audio.getId(), audio);
+
+        FacetResult available = searchService.facet(FacetQuery.builder()
+                .statuses(Set.of(ItemStatus.AVAILABLE)).build());
+        assertThat(available.getBooks()).containsExactly(refactoring);
+        assertThat(available.getCounts().get(Facet.STATUS)).isEqualTo(Map.of("AVAILABLE", 5000));
+        assertThat(available.getCounts().get(Facet.TYPE)).isEqualTo(Map.of("HARD_COVER", 5000));
+
+        for (ItemCopy copy : copies.subList(1, copies.size())) {
+            copy.setStatus(ItemStatus.CHECKED_OUT);
+            libraryState.getItemCopies().refresh(copy);
+        }
+
+        FacetResult checkedOut = searchService.facet(FacetQuery.builder()
+                .statuses(Set.of(ItemStatus.CHECKED_OUT)).build());
+        assertThat(checkedOut.getBooks()).containsExactlyInAnyOrder(refactoring, patterns);
+        assertThat(checkedOut.getCounts().get(Facet.STATUS)).isEqualTo(Map.of("CHECKED_OUT", 5000));
+        assertThat(searchService.facet(FacetQuery.builder()
+                .types(Set.of(ItemType.AUDIO_BOOK)).statuses(Set.of(ItemStatus.AVAILABLE)).build())
+                .getBooks()).isEmpty();
+        assertThat(searchService.facet(FacetQuery.builder()
+                .statuses(Set.of(ItemStatus.AVAILABLE)).build()).getBooks()).containsExactly(refactoring);
+    }
+}
\ No newline at end of file
@@ -146,5 +146,42 @@ class InventoryTest {
 
             assertThat(availabilityObserver.getAvailableCopiesCount(testBook.getId())).isZero();
         }
+
+        @Test
+        @Order(7)
+        @DisplayName("Should find copies by book, status and shelf location")
+        void shouldFindCopiesByStatusAndLocation() {
+            ItemCopy firstFloor = new ItemCopy(testBook, "BC008", "1F-CS-001");
+            ItemCopy secondFloor = new ItemCopy(testBook, "BC009", "2F-CS-014");
+            ItemCopy checkedOut = new ItemCopy(testBook, "BC010", "2F-CS-015");
+            ItemCopy otherBook = new ItemCopy(Book.builder().id(UUID.randomUUID()).title("Other").build(), "BC011", "2F-CS-016");
+            for (ItemCopy copy : new ItemCopy[]{firstFloor, secondFloor, checkedOut, otherBook}) {
+                libraryState.getItemCopies().put(copy.getId(), copy);
+            }
+            checkedOut.setStatus(ItemStatus.CHECKED_OUT);
+            libraryState.notifyInventoryChange(checkedOut);
+
+            assertThat(libraryState.getItemCopies().findCopies(testBook.getId(), ItemStatus.AVAILABLE,
+                    location -> location.startsWith("2F"))).containsExactly(secondFloor);
+            assertThat(libraryState.getItemCopies().countCopies(testBook.getId(), ItemStatus.AVAILABLE)).isEqualTo(2);
+            assertThat(libraryState.getItemCopies().statusCounts())
+                    .containsEntry(ItemStatus.AVAILABLE, 3)
+                    .containsEntry(ItemStatus.CHECKED_OUT, 1);
+
+            libraryState.getItemCopies().remove(secondFloor.getId());
+
+            assertThat(libraryState.getItemCopies().findCopies(null, ItemStatus.AVAILABLE,
+                    location -> location.startsWith("2F"))).containsExactly(otherBook);
+            assertThat(libraryState.getItemCopies().countCopies(testBook.getId(), ItemStatus.AVAILABLE)).isEqualTo(1);
+
+            checkedOut.setStatus(ItemStatus.AVAILABLE);
+            libraryState.notifyInventoryChange(checkedOut);
+
+            assertThat(libraryState.getItemCopies().countCopies(testBook.getId(), ItemStatus.AVAILABLE)).isEqualTo(2);
+            assertThat(libraryState.getItemCopies().countCopies(testBook.getId(), ItemStatus.CHECKED_OUT)).isZero();
+            assertThat(libraryState.getItemCopies().statusCounts())
+                    .containsEntry(ItemStatus.AVAILABLE, 3)
+                    .doesNotContainKey(ItemStatus.CHECKED_OUT);
+        }
     }
 }
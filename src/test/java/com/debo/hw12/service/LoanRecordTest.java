@@ -12,8 +12,11 @@ import com.debo.hw12.model.accrual.BiWeeklyLateFeeAccrualImpl;
 import com.debo.hw12.model.accrual.DailyLateFeeAccrualImpl;
 import com.debo.hw12.model.accrual.MonthlyLateFeeAccrualImpl;
 import com.debo.hw12.model.accrual.WeeklyLateFeeAccrualImpl;
+import com.debo.hw12.observer.impl.PatronNotifier;
 import com.debo.hw12.service.impl.LoanRecordServiceImpl;
 import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
+import com.debo.hw12.util.EmailService;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -23,10 +26,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @DisplayName("LoanRecord Service Implementation Tests")
@@ -135,6 +144,117 @@ class LoanRecordTest {
                     .isInstanceOf(ValidationException.class)
                     .hasMessageContaining("not eligible for borrowing");
         }
+
+        @Test
+        @Order(4)
+        @DisplayName("Should check out and return by barcode")
+        void shouldCheckoutAndReturnByBarcode() throws ValidationException, BusinessRuleException, EntityNotFoundException {
+            when(patronService.getPatronById(patron.getId())).thenReturn(Optional.of(patron));
+            when(patronService.isPatronEligibleForBorrowing(patron.getId())).thenReturn(true);
+
+            LoanRecord loan = loanRecordService.checkoutByBarcode(patron.getId(), "BC001", dueDate);
+
+            assertThat(loan.getItemCopy()).isEqualTo(itemCopy);
+            assertThat(libraryState.getLoans().activeLoanFor(itemCopy.getId())).isSameAs(loan);
+
+            LoanRecord returned = loanRecordService.returnByBarcode(" BC001 ");
+
+            assertThat(returned).isSameAs(loan);
+            assertThat(returned.getStatus()).isEqualTo(LoanStatus.RETURNED);
+            assertThat(itemCopy.getStatus()).isEqualTo(ItemStatus.AVAILABLE);
+            assertThat(libraryState.getLoans().activeLoanFor(itemCopy.getId())).isNull();
+            assertThatThrownBy(() -> loanRecordService.returnByBarcode("BC001"))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("not checked out");
+            assertThatThrownBy(() -> loanRecordService.returnByBarcode("BC999"))
+                    .isInstanceOf(EntityNotFoundException.class);
+        }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should lend each copy once when many desks check out at the same time")
+        void shouldNotDoubleLendUnderConcurrentCheckout() throws InterruptedException, ExecutionException {
+            List<ItemCopy> copies = new ArrayList<>(List.of(itemCopy));
+            for (int i = 2; i <= 8; i++) {
+                ItemCopy copy = new ItemCopy(book, "BC00" + i, "SHELF-A1");
+                book.addCopy(copy);
+                libraryState.getItemCopies().put(copy.getId(), copy);
+                copies.add(copy);
+            }
+            int desks = 12;
+            Map<UUID, Patron> patrons = new ConcurrentHashMap<>();
+            List<Callable<LoanRecord>> checkouts = new ArrayList<>();
+            for (ItemCopy copy : copies) {
+                for (int desk = 0; desk < desks; desk++) {
+                    Patron borrower = Patron.builder()
+                            .id(UUID.randomUUID())
+                            .name("Borrower " + desk)
+                            .type(PatronType.STANDARD)
+                            .active(true)
+                            .currentLoans(new HashSet<>())
+                            .loanHistory(new ArrayList<>())
+                            .build();
+                    patrons.put(borrower.getId(), borrower);
+                    checkouts.add(() -> {
+                        try {
+                            return loanRecordService.checkoutItem(borrower.getId(), copy.getId(), dueDate);
+                        } catch (BusinessRuleException e) {
+                            return null;
+                        } catch (ValidationException e) {
+                            throw new AssertionError(e);
+                        }
+                    });
+                }
+            }
+            Collections.shuffle(checkouts);
+            when(patronService.getPatronById(any(UUID.class)))
+                    .thenAnswer(invocation -> Optional.ofNullable(patrons.get(invocation.<UUID>getArgument(0))));
+            when(patronService.isPatronEligibleForBorrowing(any(UUID.class))).thenReturn(true);
+
+            List<LoanRecord> loans = new ArrayList<>();
+            try (ExecutorService pool = Executors.newFixedThreadPool(desks)) {
+                for (Future<LoanRecord> result : pool.invokeAll(checkouts)) {
+                    if (result.get() != null) {
+                        loans.add(result.get());
+                    }
+                }
+            }
+
+            assertThat(loans).hasSize(copies.size());
+            assertThat(loans).extracting(LoanRecord::getItemCopyId)
+                    .containsExactlyInAnyOrderElementsOf(copies.stream().map(ItemCopy::getId).toList());
+            for (ItemCopy copy : copies) {
+                assertThat(copy.getStatus()).isEqualTo(ItemStatus.CHECKED_OUT);
+                assertThat(loanRecordService.getCopyLoanHistory(copy.getId())).hasSize(1);
+            }
+
+            // Every loan is returned from two desks at once; exactly one of them closes it.
+            List<Callable<Boolean>> returns = new ArrayList<>();
+            for (LoanRecord loan : loans) {
+                Callable<Boolean> giveBack = () -> {
+                    try {
+                        loanRecordService.returnItem(loan.getId());
+                        return true;
+                    } catch (ValidationException e) {
+                        return false;
+                    } catch (EntityNotFoundException e) {
+                        throw new AssertionError(e);
+                    }
+                };
+                returns.add(giveBack);
+                returns.add(giveBack);
+            }
+            int closed = 0;
+            try (ExecutorService pool = Executors.newFixedThreadPool(desks)) {
+                for (Future<Boolean> result : pool.invokeAll(returns)) {
+                    closed += result.get() ? 1 : 0;
+                }
+            }
+
+            assertThat(closed).isEqualTo(loans.size());
+            assertThat(copies).allMatch(ItemCopy::isAvailable);
+            assertThat(loanRecordService.getActiveLoans()).isEmpty();
+        }
     }
 
     @Nested
@@ -203,6 +323,132 @@ class LoanRecordTest {
             assertThat(result.getLateFees()).isGreaterThan(0.0);
             assertThat(result.getStatus()).isEqualTo(LoanStatus.RETURNED);
         }
+
+        @Test
+        @Order(3)
+        @DisplayName("Should find and charge loans past their due time")
+        void shouldProcessOverdueLoans() {
+            LoanRecord onTime = new LoanRecord(itemCopy, patron, LocalDateTime.now().plusDays(1));
+            libraryState.getLoans().put(onTime.getId(), onTime);
+
+            assertThat(loanRecordService.getOverdueLoans()).containsExactly(loanRecord);
+
+            loanRecordService.processOverdueLoans();
+
+            assertThat(loanRecord.getLateFees()).isGreaterThan(0.0);
+            assertThat(onTime.getLateFees()).isZero();
+            assertThat(loanRecord.getDueDate()).isEqualTo(dueDate);
+        }
+
+        @Test
+        @Order(4)
+        @DisplayName("Should answer account lookups from the loan indexes")
+        void shouldIndexLoansByPatronCopyAndStatus() throws ValidationException, EntityNotFoundException {
+            Patron other = Patron.builder()
+                    .id(UUID.randomUUID())
+                    .name("Jane Roe")
+                    .email("jane@example.com")
+                    .type(PatronType.FACULTY)
+                    .active(true)
+                    .currentLoans(new HashSet<>())
+                    .loanHistory(new ArrayList<>())
+                    .build();
+            ItemCopy secondCopy = new ItemCopy(book, "BC002", "SHELF-A1");
+            libraryState.getItemCopies().put(secondCopy.getId(), secondCopy);
+            LoanRecord otherLoan = new LoanRecord(secondCopy, other, LocalDateTime.now().plusDays(7));
+            libraryState.getLoans().put(otherLoan.getId(), otherLoan);
+
+            assertThat(loanRecordService.getActiveLoans()).containsExactlyInAnyOrder(loanRecord, otherLoan);
+            assertThat(loanRecordService.getPatronActiveLoans(patron.getId())).containsExactly(loanRecord);
+
+            loanRecordService.returnItem(loanRecord.getId());
+            LoanRecord again = new LoanRecord(itemCopy, other, LocalDateTime.now().plusDays(7));
+            libraryState.getLoans().put(again.getId(), again);
+
+            assertThat(loanRecordService.getActiveLoans()).containsExactlyInAnyOrder(otherLoan, again);
+            assertThat(loanRecordService.getPatronActiveLoans(patron.getId())).isEmpty();
+            assertThat(loanRecordService.getPatronLoanHistory(patron.getId())).containsExactly(loanRecord);
+            assertThat(loanRecordService.getPatronActiveLoans(other.getId())).containsExactlyInAnyOrder(otherLoan, again);
+            assertThat(loanRecordService.getCopyLoanHistory(itemCopy.getId())).containsExactlyInAnyOrder(loanRecord, again);
+            assertThat(libraryState.getLoans().activeLoanFor(itemCopy.getId())).isSameAs(again);
+
+            libraryState.getLoans().remove(again.getId());
+
+            assertThat(loanRecordService.getCopyLoanHistory(itemCopy.getId())).containsExactly(loanRecord);
+            assertThat(libraryState.getLoans().activeLoanFor(itemCopy.getId())).isNull();
+        }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should take each loan once when it becomes overdue")
+        void shouldTakeOverdueLoansOnce() throws ValidationException, EntityNotFoundException {
+            LoanRecord later = new LoanRecord(itemCopy, patron, LocalDateTime.now().plusDays(3));
+            libraryState.getLoans().put(later.getId(), later);
+
+            assertThat(libraryState.getLoans().nextDueAt()).isEqualTo(loanRecord.getDueAt());
+
+            loanRecordService.processOverdueLoans();
+            double charged = loanRecord.getLateFees();
+
+            assertThat(charged).isGreaterThan(0.0);
+            assertThat(libraryState.getLoans().takeDue(EpochTime.now())).isEmpty();
+            assertThat(libraryState.getLoans().nextDueAt()).isEqualTo(later.getDueAt());
+            assertThat(loanRecordService.getOverdueLoans()).containsExactly(loanRecord);
+
+            assertThat(libraryState.getLoans().takeDue(later.getDueAt() + 1)).containsExactly(later);
+
+            loanRecordService.returnItem(loanRecord.getId());
+
+            // Overdue is what the index has taken, so `later` counts as overdue from here on.
+            assertThat(loanRecordService.getOverdueLoans()).containsExactly(later);
+            assertThat(libraryState.getLoans().nextDueAt()).isEqualTo(EpochTime.NONE);
+        }
+
+        @Test
+        @Order(6)
+        @DisplayName("Should price a loan that stays overdue when it is read or returned")
+        void shouldPriceOverdueLoansOnReadAndReturn() throws ValidationException, EntityNotFoundException {
+            loanRecord.setDueDate(LocalDateTime.now().minusSeconds(1));
+            libraryState.getLoans().refresh(loanRecord);
+
+            loanRecordService.processOverdueLoans();
+            assertThat(loanRecord.getLateFees()).isZero();
+
+            // Moving the due date back without refreshing the loan table stands in for the clock
+            // moving on: the loan was taken once and later runs leave it alone.
+            loanRecord.setDueDate(LocalDateTime.now().minusDays(15));
+            loanRecordService.processOverdueLoans();
+            assertThat(loanRecord.getLateFees()).isZero();
+
+            double owed = loanRecordService.calculateLateFees(loanRecord.getId());
+            assertThat(owed).isGreaterThan(0.0);
+            assertThat(loanRecordService.returnItem(loanRecord.getId()).getLateFees()).isEqualTo(owed);
+        }
+
+        @Test
+        @Order(7)
+        @DisplayName("Should close the loan but leave a copy that was not checked out where it is")
+        void shouldNotShelveCopyThatWasNotCheckedOut() throws ValidationException, EntityNotFoundException {
+            itemCopy.setStatus(ItemStatus.UNDER_MAINTENANCE);
+
+            LoanRecord result = loanRecordService.returnItem(loanRecord.getId());
+
+            assertThat(result.getStatus()).isEqualTo(LoanStatus.RETURNED);
+            assertThat(itemCopy.getStatus()).isEqualTo(ItemStatus.UNDER_MAINTENANCE);
+        }
+
+        @Test
+        @Order(8)
+        @DisplayName("Should put a checked-out copy back on the shelf")
+        void shouldShelveCheckedOutCopy() throws ValidationException, EntityNotFoundException {
+            itemCopy.setStatus(ItemStatus.CHECKED_OUT);
+
+            LoanRecord result = loanRecordService.returnItem(loanRecord.getId());
+
+            assertThat(result.getStatus()).isEqualTo(LoanStatus.RETURNED);
+            assertThat(itemCopy.getStatus()).isEqualTo(ItemStatus.AVAILABLE);
+            assertThat(libraryState.getLoans().activeLoanFor(itemCopy.getId())).isNull();
+        }
     }
 
     @Nested
@@ -284,5 +530,147 @@ class LoanRecordTest {
             assertThat(activeReservations).hasSize(1);
             assertThat(activeReservations.getFirst().getQueuePosition()).isEqualTo(1);
         }
+
+        @Test
+        @Order(4)
+        @DisplayName("Should expire only reservations past their expiry and renumber the queue")
+        void shouldExpireReservationsFromIndex() throws BusinessRuleException, ValidationException {
+            Patron patron2 = new Patron("Jane Doe", "jane@example.com", PatronType.STUDENT);
+            Patron patron3 = new Patron("Jim Roe", "jim@example.com", PatronType.FACULTY);
+            Map<UUID, Patron> patrons = Map.of(patron.getId(), patron, patron2.getId(), patron2, patron3.getId(), patron3);
+            when(patronService.getPatronById(any(UUID.class)))
+                    .thenAnswer(invocation -> Optional.of(patrons.get(invocation.<UUID>getArgument(0))));
+
+            Reservation res1 = loanRecordService.reserveItem(patron.getId(), itemCopy.getId());
+            Reservation res2 = loanRecordService.reserveItem(patron2.getId(), itemCopy.getId());
+            Reservation res3 = loanRecordService.reserveItem(patron3.getId(), itemCopy.getId());
+            try (Mutation mutation = libraryState.beginMutation()) {
+                mutation.touch(res1);
+                mutation.touch(res3);
+                res1.setExpiryDate(LocalDateTime.now().minusDays(1));
+                res3.setExpiryDate(LocalDateTime.now().minusHours(1));
+            }
+
+            loanRecordService.processExpiredReservations();
+
+            assertThat(res1.getStatus()).isEqualTo(ReservationStatus.EXPIRED);
+            assertThat(res3.getStatus()).isEqualTo(ReservationStatus.EXPIRED);
+            assertThat(res2.getStatus()).isEqualTo(ReservationStatus.PENDING);
+            assertThat(loanRecordService.getQueuePosition(res2)).isEqualTo(1);
+            assertThat(libraryState.getReservations().pendingFor(book.getId())).containsExactly(res2);
+            assertThat(libraryState.getReservations().takeExpired(EpochTime.now())).isEmpty();
+        }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should give concurrent reservations distinct queue positions")
+        void shouldQueueConcurrentReservations() throws ValidationException, InterruptedException, ExecutionException {
+            List<Patron> patrons = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                patrons.add(new Patron("Patron " + i, "patron" + i + "@example.com", PatronType.STUDENT));
+            }
+            Map<UUID, Patron> byId = new HashMap<>();
+            patrons.forEach(p -> byId.put(p.getId(), p));
+            when(patronService.getPatronById(any(UUID.class)))
+                    .thenAnswer(invocation -> Optional.ofNullable(byId.get(invocation.<UUID>getArgument(0))));
+
+            // Every patron reserves twice at once; the second attempt has to be turned away.
+            List<Callable<Reservation>> reserves = new ArrayList<>();
+            for (Patron each : patrons) {
+                Callable<Reservation> reserve = () -> {
+                    try {
+                        return loanRecordService.reserveItem(each.getId(), itemCopy.getId());
+                    } catch (BusinessRuleException e) {
+                        return null;
+                    } catch (ValidationException e) {
+                        throw new AssertionError(e);
+                    }
+                };
+                reserves.add(reserve);
+                reserves.add(reserve);
+            }
+            List<Reservation> made = new ArrayList<>();
+            int rejected = 0;
+            try (ExecutorService desks = Executors.newFixedThreadPool(8)) {
+                for (Future<Reservation> result : desks.invokeAll(reserves)) {
+                    if (result.get() == null) {
+                        rejected++;
+                    } else {
+                        made.add(result.get());
+                    }
+                }
+            }
+
+            assertThat(made).hasSize(patrons.size());
+            assertThat(rejected).isEqualTo(patrons.size());
+            List<Reservation> queue = loanRecordService.getItemReservations(itemCopy.getId());
+            assertThat(queue).containsExactlyInAnyOrderElementsOf(made);
+            for (int i = 0; i < queue.size(); i++) {
+                assertThat(loanRecordService.getQueuePosition(queue.get(i))).isEqualTo(i + 1);
+            }
+
+            loanRecordService.cancelReservation(queue.get(3).getId());
+
+            assertThat(loanRecordService.getQueuePosition(queue.get(4))).isEqualTo(4);
+            assertThat(loanRecordService.getItemReservations(itemCopy.getId())).hasSize(patrons.size() - 1);
+        }
+
+        @Test
+        @Order(6)
+        @DisplayName("Should hold a returned copy for the first patron in line only")
+        void shouldAllocateReturnedCopyToHeadOfQueue() throws BusinessRuleException, ValidationException, EntityNotFoundException {
+            EmailService emailService = mock(EmailService.class);
+            PatronNotifier notifier = new PatronNotifier(emailService);
+            libraryState.addObserver(notifier);
+            try {
+                Patron patron2 = new Patron("Jane Doe", "jane@example.com", PatronType.STUDENT);
+                Patron borrower = new Patron("Jim Roe", "jim@example.com", PatronType.FACULTY);
+                Map<UUID, Patron> patrons = Map.of(patron.getId(), patron, patron2.getId(), patron2, borrower.getId(), borrower);
+                when(patronService.getPatronById(any(UUID.class)))
+                        .thenAnswer(invocation -> Optional.of(patrons.get(invocation.<UUID>getArgument(0))));
+                when(patronService.isPatronEligibleForBorrowing(any(UUID.class))).thenReturn(true);
+
+                LoanRecord loan = loanRecordService.checkoutItem(borrower.getId(), itemCopy.getId(), LocalDateTime.now().plusDays(7));
+                Reservation first = loanRecordService.reserveItem(patron.getId(), itemCopy.getId());
+                Reservation second = loanRecordService.reserveItem(patron2.getId(), itemCopy.getId());
+                loanRecordService.cancelReservation(second.getId());
+                Reservation third = loanRecordService.reserveItem(patron2.getId(), itemCopy.getId());
+
+                loanRecordService.returnItem(loan.getId());
+                loanRecordService.allocateHold(itemCopy.getId());
+                // The hold may have been placed by the background allocation; it is visible once the
+                // patron has been told.
+                verify(emailService, timeout(2000)).sendEmail(eq(patron.getEmail()), any(), any());
+
+                assertThat(itemCopy.getStatus()).isEqualTo(ItemStatus.RESERVED);
+                assertThat(first.getStatus()).isEqualTo(ReservationStatus.READY);
+                assertThat(first.getHeldCopyId()).isEqualTo(itemCopy.getId());
+                assertThat(loanRecordService.getQueuePosition(third)).isEqualTo(1);
+                assertThat(libraryState.getReservations().heldFor(itemCopy.getId())).isSameAs(first);
+                verify(emailService, never()).sendEmail(eq(patron2.getEmail()), any(), any());
+                assertThatThrownBy(() -> loanRecordService.checkoutItem(patron2.getId(), itemCopy.getId(), LocalDateTime.now().plusDays(7)))
+                        .isInstanceOf(BusinessRuleException.class);
+
+                // The pickup window lapses and the copy moves on to the next patron.
+                try (Mutation mutation = libraryState.beginMutation()) {
+                    mutation.touch(first);
+                    first.setExpiryDate(LocalDateTime.now().minusMinutes(1));
+                }
+                loanRecordService.processExpiredReservations();
+                loanRecordService.allocateHold(itemCopy.getId());
+                verify(emailService, timeout(2000)).sendEmail(eq(patron2.getEmail()), any(), any());
+
+                assertThat(first.getStatus()).isEqualTo(ReservationStatus.EXPIRED);
+                assertThat(third.getStatus()).isEqualTo(ReservationStatus.READY);
+
+                LoanRecord pickup = loanRecordService.checkoutItem(patron2.getId(), itemCopy.getId(), LocalDateTime.now().plusDays(7));
+
+                assertThat(pickup.getStatus()).isEqualTo(LoanStatus.ACTIVE);
+                assertThat(third.getStatus()).isEqualTo(ReservationStatus.FULFILLED);
+                assertThat(libraryState.getReservations().heldFor(itemCopy.getId())).isNull();
+            } finally {
+                libraryState.removeObserver(notifier);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -13,9 +13,14 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -260,5 +265,59 @@ class PatronTest {
             assertThat(patronService.isPatronEligibleForBorrowing(patron.getId()))
                     .isFalse();
         }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should find patrons by email and keep the index in step with changes")
+        void shouldFindByEmail() throws ValidationException, DuplicateEntityException, BusinessRuleException {
+            assertThat(patronService.findByEmail(" ORIGINAL@example.com ")).map(Patron::getId).contains(patronId);
+
+            patronService.updatePatron(patronId, "Original Name", "changed@example.com");
+
+            assertThat(patronService.findByEmail("original@example.com")).isEmpty();
+            assertThat(patronService.findByEmail("Changed@Example.com")).map(Patron::getId).contains(patronId);
+            Patron other = patronService.registerPatron("Other", "original@example.com", "STANDARD");
+            assertThatThrownBy(() -> patronService.updatePatron(other.getId(), "Other", "CHANGED@example.com"))
+                    .isInstanceOf(DuplicateEntityException.class);
+            assertThat(patronService.findByEmail("original@example.com")).map(Patron::getId).contains(other.getId());
+
+            patronService.deactivatePatron(patronId);
+
+            assertThat(patronService.findByEmail("changed@example.com")).isEmpty();
+            assertThat(patronService.registerPatron("Newcomer", "changed@example.com", "STUDENT").isActive()).isTrue();
+        }
+
+        @Test
+        @Order(6)
+        @DisplayName("Should register a contested email exactly once")
+        void shouldRejectConcurrentDuplicateEmail() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Patron>> attempts = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    String email = i % 2 == 0 ? "contested@example.com" : "Contested@Example.com";
+                    attempts.add(executor.submit(() -> {
+                        try {
+                            return patronService.registerPatron("Contender", email, "STUDENT");
+                        } catch (DuplicateEntityException e) {
+                            return null;
+                        } catch (ValidationException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+                }
+                int registered = 0;
+                for (Future<Patron> attempt : attempts) {
+                    if (attempt.get() != null) {
+                        registered++;
+                    }
+                }
+                assertThat(registered).isEqualTo(1);
+                assertThat(patronService.findByEmail("contested@example.com")).isPresent();
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
     }
 }
\ No newline at end of file
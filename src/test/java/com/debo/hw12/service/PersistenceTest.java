@@ -0,0 +1,417 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.enums.ItemStatus;
+import com.debo.hw12.enums.LoanStatus;
+import com.debo.hw12.enums.PatronType;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.ItemCopy;
+import com.debo.hw12.model.LoanRecord;
+import com.debo.hw12.model.Patron;
+import com.debo.hw12.state.LibraryState;
+import com.debo.hw12.state.Mutation;
+import com.debo.hw12.state.persistence.MutationJournal;
+import com.debo.hw12.state.persistence.SyncMode;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Library State Persistence Tests")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class PersistenceTest {
+
+    @TempDir
+    Path dataDir;
+
+    private Book book;
+    private ItemCopy copy;
+    private Patron patron;
+
+    @BeforeEach
+    void setUp() {
+        book = Book.builder()
+                .id(UUID.randomUUID())
+                .title("Clean Code")
+                .isbn("9780132350884")
+                .author("Robert C. Martin")
+                .active(true)
+                .copies(new ArrayList<>())
+                .build();
+        copy = new ItemCopy(book, "9780132350884-001", "1F-CS-001");
+        patron = new Patron("John Doe", "john@example.com", PatronType.STUDENT);
+    }
+
+    private void seed(LibraryState state) {
+        try (Mutation mutation = state.beginMutation()) {
+            mutation.touch(book);
+            mutation.touch(copy);
+            mutation.touch(patron);
+            state.getBooks().put(book.getId(), book);
+            state.getItemCopies().put(copy.getId(), copy);
+            state.getPatrons().put(patron.getId(), patron);
+        }
+    }
+
+    private LoanRecord checkout(LibraryState state) {
+        LoanRecord loan = new LoanRecord(copy, patron, LocalDateTime.now().plusDays(14));
+        try (Mutation mutation = state.beginMutation()) {
+            mutation.touch(copy);
+            mutation.touch(loan);
+            copy.setStatus(ItemStatus.CHECKED_OUT);
+            state.getLoans().put(loan.getId(), loan);
+        }
+        return loan;
+    }
+
+    @Nested
+    @DisplayName("Journal Replay Tests")
+    @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+    class JournalReplayTests {
+
+        @Test
+        @Order(1)
+        @DisplayName("Should restore journaled mutations on startup")
+        void shouldReplayJournal() {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+            LoanRecord loan = checkout(state);
+            state.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+
+            assertThat(restored.getBooks()).containsKey(book.getId());
+            assertThat(restored.getBooks().get(book.getId()).getIsbn()).isEqualTo(book.getIsbn());
+            assertThat(restored.getItemCopies().get(copy.getId()).getStatus()).isEqualTo(ItemStatus.CHECKED_OUT);
+
+            LoanRecord restoredLoan = restored.getLoans().get(loan.getId());
+            assertThat(restoredLoan.getStatus()).isEqualTo(LoanStatus.ACTIVE);
+            assertThat(restoredLoan.getDueDate()).isEqualTo(loan.getDueDate());
+            assertThat(restoredLoan.getLateFeeAccrual()).isInstanceOf(loan.getLateFeeAccrual().getClass());
+            assertThat(restoredLoan.getPatron().getCurrentLoans()).contains(restoredLoan);
+            assertThat(restored.getBooks().get(book.getId()).getCopies()).hasSize(1);
+            restored.close();
+        }
+
+        @Test
+        @Order(2)
+        @DisplayName("Should ignore a torn record at the end of the journal")
+        void shouldIgnoreTornTail() throws IOException {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+            state.close();
+
+            try (Stream<Path> segments = Files.list(dataDir.resolve("journal"))) {
+                Path segment = segments.findFirst().orElseThrow();
+                Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+            }
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getPatrons()).containsKey(patron.getId());
+
+            checkout(restored);
+            restored.close();
+
+            assertThat(LibraryState.load(dataDir).getLoans()).hasSize(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("Snapshot Tests")
+    @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+    class SnapshotTests {
+
+        @Test
+        @Order(1)
+        @DisplayName("Should restore a snapshot together with the journal written after it")
+        void shouldRestoreSnapshotAndJournalTail() throws IOException {
+            book.setPublisher("Prentice Hall");
+            book.setPublicationYear(2008);
+            book.addGenre("Software Engineering");
+            book.addGenre("Programming");
+
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+            state.saveState();
+            LoanRecord loan = checkout(state);
+            state.close();
+
+            try (Stream<Path> segments = Files.list(dataDir.resolve("journal"))) {
+                assertThat(segments.count()).isEqualTo(1);
+            }
+
+            LibraryState restored = LibraryState.load(dataDir);
+            Book restoredBook = restored.getBooks().get(book.getId());
+            assertThat(restoredBook.getAuthor()).isEqualTo("Robert C. Martin");
+            assertThat(restoredBook.getPublisher()).isEqualTo("Prentice Hall");
+            assertThat(restoredBook.getPublicationYear()).isEqualTo(2008);
+            assertThat(restoredBook.getGenres()).containsExactlyInAnyOrder("Software Engineering", "Programming");
+            assertThat(restored.getPatrons().get(patron.getId()).getEmail()).isEqualTo("john@example.com");
+            assertThat(restored.getItemCopies().get(copy.getId()).getItem()).isSameAs(restoredBook);
+            assertThat(restored.getLoans().get(loan.getId()).getItemCopy().getStatus()).isEqualTo(ItemStatus.CHECKED_OUT);
+            restored.close();
+        }
+
+        @Test
+        @Order(2)
+        @DisplayName("Should reject a file that is not a snapshot")
+        void shouldRejectForeignFile() throws IOException {
+            Files.write(dataDir.resolve("library_state.snapshot"), new byte[]{1, 2, 3, 4, 5, 6});
+
+            assertThatThrownBy(() -> LibraryState.load(dataDir))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessageContaining("Failed to load library state");
+        }
+
+        @Test
+        @Order(3)
+        @DisplayName("Should decode books and copies from the mapped snapshot on demand")
+        void shouldLoadBooksLazily() {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+            List<Book> shelf = new ArrayList<>();
+            try (Mutation mutation = state.beginMutation()) {
+                for (int i = 0; i < 20; i++) {
+                    Book other = Book.builder()
+                            .id(UUID.randomUUID())
+                            .title("Volume " + i)
+                            .author("Robert C. Martin")
+                            .active(true)
+                            .copies(new ArrayList<>())
+                            .build();
+                    ItemCopy otherCopy = new ItemCopy(other, "VOL-" + i, "2F-CS-" + i);
+                    mutation.touch(other);
+                    mutation.touch(otherCopy);
+                    state.getBooks().put(other.getId(), other);
+                    state.getItemCopies().put(otherCopy.getId(), otherCopy);
+                    shelf.add(other);
+                }
+            }
+            state.saveState();
+            try (Mutation mutation = state.beginMutation()) {
+                Book renamed = shelf.get(7);
+                mutation.touch(renamed);
+                renamed.setTitle("Volume Seven");
+            }
+            state.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getBooks()).hasSize(21);
+            assertThat(restored.getItemCopies()).hasSize(21);
+            assertThat(restored.getBooks().containsKey(shelf.get(3).getId())).isTrue();
+            assertThat(restored.getBooks().containsKey(UUID.randomUUID())).isFalse();
+
+            ItemCopy restoredCopy = restored.getItemCopies().get(copy.getId());
+            Book restoredBook = restored.getBooks().get(book.getId());
+            assertThat(restoredCopy.getItem()).isSameAs(restoredBook);
+            assertThat(restoredBook.getCopies()).containsExactly(restoredCopy);
+            assertThat(restored.getBooks().get(shelf.get(7).getId()).getTitle()).isEqualTo("Volume Seven");
+
+            assertThat(restored.getBooks().values()).hasSize(21);
+            assertThat(restored.getItemCopies().values())
+                    .allSatisfy(c -> assertThat(c.getItem().getCopies()).containsExactly(c));
+            restored.close();
+        }
+
+        @Test
+        @Order(4)
+        @DisplayName("Should write a consistent snapshot in the background while checkouts continue")
+        void shouldSnapshotDuringCheckouts() throws Exception {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicInteger checkouts = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    while (running.get()) {
+                        ItemCopy deskCopy = new ItemCopy(book, UUID.randomUUID().toString(), "1F-CS-002");
+                        LoanRecord loan = new LoanRecord(deskCopy, patron, LocalDateTime.now().plusDays(14));
+                        try (Mutation mutation = state.beginMutation()) {
+                            mutation.touch(deskCopy);
+                            mutation.touch(loan);
+                            state.getItemCopies().put(deskCopy.getId(), deskCopy);
+                            deskCopy.setStatus(ItemStatus.CHECKED_OUT);
+                            state.getLoans().put(loan.getId(), loan);
+                        }
+                        checkouts.incrementAndGet();
+                    }
+                }));
+            }
+            while (checkouts.get() < 50) {
+                Thread.onSpinWait();
+            }
+            state.saveStateInBackground().get(30, TimeUnit.SECONDS);
+            int afterSnapshot = checkouts.get();
+            while (checkouts.get() < afterSnapshot + 50) {
+                Thread.onSpinWait();
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            state.close();
+
+            // Every checkout is either wholly inside the snapshot or wholly after it.
+            Path snapshotOnlyDir = Files.createDirectory(dataDir.resolve("snapshot-only"));
+            try (Stream<Path> files = Files.list(dataDir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".snapshot")).toList()) {
+                    Files.copy(file, snapshotOnlyDir.resolve(file.getFileName()));
+                }
+            }
+            LibraryState snapshotOnly = LibraryState.load(snapshotOnlyDir);
+            assertThat(snapshotOnly.getLoans()).isNotEmpty();
+            assertThat(snapshotOnly.getItemCopies()).hasSize(snapshotOnly.getLoans().size() + 1);
+            assertThat(snapshotOnly.getLoans().values())
+                    .allSatisfy(l -> assertThat(l.getItemCopy().getStatus()).isEqualTo(ItemStatus.CHECKED_OUT));
+            snapshotOnly.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getLoans()).hasSize(checkouts.get());
+            restored.close();
+        }
+
+        @Test
+        @Order(5)
+        @DisplayName("Should find and claim ISBNs of books still in the mapped snapshot")
+        void shouldFindSnapshotBooksByIsbn() {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+            try (Mutation mutation = state.beginMutation()) {
+                for (int i = 0; i < 20; i++) {
+                    Book other = Book.builder()
+                            .id(UUID.randomUUID())
+                            .title("Volume " + i)
+                            .isbn("97800000000" + (10 + i))
+                            .author("Robert C. Martin")
+                            .active(true)
+                            .copies(new ArrayList<>())
+                            .build();
+                    mutation.touch(other);
+                    state.getBooks().put(other.getId(), other);
+                }
+            }
+            state.saveState();
+            state.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getBooks().findByIsbn("9780000000022").getTitle()).isEqualTo("Volume 12");
+            assertThat(restored.getBooks().findByIsbn(book.getIsbn()).getId()).isEqualTo(book.getId());
+            assertThat(restored.getBooks().findByIsbn("9780000000099")).isNull();
+            assertThat(restored.getBooks().claimIsbn("9780000000015", UUID.randomUUID())).isFalse();
+            UUID fresh = UUID.randomUUID();
+            assertThat(restored.getBooks().claimIsbn("9780000000099", fresh)).isTrue();
+            restored.getBooks().releaseIsbn("9780000000099", fresh);
+            assertThat(restored.getBooks()).hasSize(21);
+            restored.close();
+        }
+    }
+
+    @Nested
+    @DisplayName("Group Commit Tests")
+    class GroupCommitTests {
+
+        @Test
+        @DisplayName("Should make every concurrent checkout durable")
+        void shouldCommitConcurrentCheckouts() throws Exception {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+
+            int threads = 8;
+            int checkoutsPerThread = 25;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < checkoutsPerThread; i++) {
+                        ItemCopy deskCopy = new ItemCopy(book, UUID.randomUUID().toString(), "1F-CS-002");
+                        LoanRecord loan = new LoanRecord(deskCopy, patron, LocalDateTime.now().plusDays(14));
+                        try (Mutation mutation = state.beginMutation()) {
+                            mutation.touch(deskCopy);
+                            mutation.touch(loan);
+                            deskCopy.setStatus(ItemStatus.CHECKED_OUT);
+                            state.getItemCopies().put(deskCopy.getId(), deskCopy);
+                            state.getLoans().put(loan.getId(), loan);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            state.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getLoans()).hasSize(threads * checkoutsPerThread);
+            assertThat(restored.getPatrons().get(patron.getId()).getCurrentLoans())
+                    .hasSize(threads * checkoutsPerThread);
+            restored.close();
+        }
+
+        @Test
+        @DisplayName("Should not hold a lone writer for the group commit window")
+        void shouldForceLoneWriterAtOnce() throws IOException {
+            try (MutationJournal journal = MutationJournal.open(dataDir.resolve("journal"), SyncMode.GROUP, 128, 5_000)) {
+                long started = System.nanoTime();
+                for (int i = 0; i < 5; i++) {
+                    journal.sync(journal.append(List.of(patron)));
+                }
+
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5_000);
+            }
+        }
+
+        @Test
+        @DisplayName("Should replay the last image of an entity changed from many threads")
+        void shouldReplayLatestImageOfContendedEntity() throws Exception {
+            LibraryState state = LibraryState.load(dataDir);
+            seed(state);
+
+            int threads = 8;
+            int changesPerThread = 50;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int desk = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < changesPerThread; i++) {
+                        try (Mutation mutation = state.beginMutation()) {
+                            mutation.touch(copy);
+                            copy.setLocation("DESK-" + desk + "-" + i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            String last = copy.getLocation();
+            state.close();
+
+            LibraryState restored = LibraryState.load(dataDir);
+            assertThat(restored.getItemCopies().get(copy.getId()).getLocation()).isEqualTo(last);
+            restored.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.exception.DuplicateEntityException;
+import com.debo.hw12.exception.ValidationException;
+import com.debo.hw12.model.Book;
+import com.debo.hw12.model.Patron;
+import com.debo.hw12.query.Query;
+import com.debo.hw12.service.impl.BookServiceImpl;
+import com.debo.hw12.service.impl.PatronServiceImpl;
+import com.debo.hw12.state.LibraryState;
+import org.junit.jupiter.api.*;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Composite Query Tests")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class QueryTest {
+
+    private BookServiceImpl bookService;
+    private PatronServiceImpl patronService;
+    private Book refactoring;
+    private Book patterns;
+    private Book garcia;
+
+    @BeforeEach
+    void setUp() throws DuplicateEntityException, ValidationException {
+        LibraryState.getInstance().getBooks().clear();
+        LibraryState.getInstance().getPatrons().clear();
+        bookService = new BookServiceImpl();
+        patronService = new PatronServiceImpl();
+
+        refactoring = bookService.createBook("Refactoring", "111", "Martin Fowler", "Addison-Wesley",
+                "1999", Set.of("Software Engineering"), "GOOD");
+        patterns = bookService.createBook("Design Patterns", "222", "Erich Gamma", "Addison-Wesley",
+                "1994", Set.of("Software Engineering", "Design Patterns"), "FAIR");
+        garcia = bookService.createBook("Cien años de soledad", "333", "Gabriel García Márquez", "Sudamericana",
+                "1967", Set.of("Fiction"), "GOOD");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should answer from the most selective index and filter the rest")
+    void shouldUseMostSelectiveIndex() throws ValidationException {
+        Query query = Query.and(Query.equalTo("genre", "Software Engineering"), Query.equalTo("isbn", "222"),
+                Query.atMost("year", 2000));
+
+        assertThat(bookService.query(query)).containsExactly(patterns);
+        assertThat(bookService.explain(query)).contains("IndexLookup isbn").doesNotContain("ParallelScan");
+
+        Query range = Query.and(Query.between("year", 1990, 2000), Query.contains("publisher", "wesley"));
+        assertThat(bookService.query(range)).containsExactlyInAnyOrder(refactoring, patterns);
+        assertThat(bookService.explain(range)).contains("IndexLookup facet (year between 1990 and 2000) ~2 rows");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should union indexes for OR and scan when a part has no index")
+    void shouldPlanDisjunctions() throws ValidationException {
+        Query indexed = Query.or(Query.contains("title", "patt"), Query.contains("author", "garcía"));
+        assertThat(bookService.query(indexed)).containsExactlyInAnyOrder(patterns, garcia);
+        assertThat(bookService.explain(indexed)).contains("Union", "trigram(title)", "trigram(author)");
+
+        Query negated = Query.and(Query.not(Query.equalTo("condition", "good")), Query.contains("publisher", "ADDISON"));
+        assertThat(bookService.query(negated)).containsExactly(patterns);
+        assertThat(bookService.explain(negated)).contains("ParallelScan books");
+
+        bookService.deleteBook(patterns.getId());
+        assertThat(bookService.query(indexed)).containsExactly(garcia);
+        assertThat(bookService.query(negated)).isEmpty();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should query patrons and reject unknown fields")
+    void shouldQueryPatrons() throws ValidationException, DuplicateEntityException {
+        Patron alice = patronService.registerPatron("Alice Smith", "alice@example.com", "STANDARD");
+        patronService.registerPatron("Bob Smith", "bob@example.com", "FACULTY");
+
+        assertThat(patronService.query(Query.and(Query.contains("name", "smith"), Query.equalTo("type", "standard"))))
+                .containsExactly(alice);
+        assertThat(patronService.explain(Query.contains("name", "smith"))).contains("ParallelScan patrons");
+        assertThat(patronService.query(Query.equalTo("email", "alice@example.com"))).containsExactly(alice);
+        assertThat(patronService.explain(Query.equalTo("email", "alice@example.com"))).contains("IndexLookup email");
+
+        assertThatThrownBy(() -> bookService.query(Query.equalTo("shelf", "A1")))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("shelf");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Should not match numeric fields against values that are not numbers")
+    void shouldNotMatchNumbersAgainstText() throws ValidationException {
+        assertThat(bookService.query(Query.between("year", "abc", 2000))).isEmpty();
+        assertThat(bookService.query(Query.between("year", 1990, "abc"))).isEmpty();
+        assertThat(bookService.query(Query.equalTo("year", "abc"))).isEmpty();
+        assertThat(bookService.query(Query.equalTo("year", " 1994 "))).containsExactly(patterns);
+    }
+}
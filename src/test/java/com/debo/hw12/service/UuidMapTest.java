@@ -0,0 +1,95 @@
+package com.debo.hw12.service;
+
+import com.debo.hw12.state.UuidMap;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("UUID Table Tests")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class UuidMapTest {
+
+    private UuidMap<String> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new UuidMap<>();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Should behave like a hash map across growth and removals")
+    void shouldMatchHashMap() {
+        Map<UUID, String> expected = new HashMap<>();
+        List<UUID> keys = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            if (!keys.isEmpty() && random.nextInt(3) == 0) {
+                UUID key = keys.get(random.nextInt(keys.size()));
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                UUID key = UUID.randomUUID();
+                keys.add(key);
+                assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+            }
+        }
+
+        assertThat(map).hasSize(expected.size());
+        assertThat(map).containsExactlyInAnyOrderEntriesOf(expected);
+        keys.forEach(key -> assertThat(map.get(key)).isEqualTo(expected.get(key)));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Should support conditional updates and the nil UUID")
+    void shouldSupportConditionalUpdates() {
+        UUID nil = new UUID(0, 0);
+
+        assertThat(map.putIfAbsent(nil, "a")).isNull();
+        assertThat(map.putIfAbsent(nil, "b")).isEqualTo("a");
+        assertThat(map.replace(nil, "b", "c")).isFalse();
+        assertThat(map.replace(nil, "a", "c")).isTrue();
+        assertThat(map.remove(nil, "a")).isFalse();
+        assertThat(map.get(nil)).isEqualTo("c");
+        assertThat(map.remove(nil, "c")).isTrue();
+        assertThat(map).isEmpty();
+        assertThat(map.replace(nil, "d")).isNull();
+        assertThat(map.containsKey(nil)).isFalse();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Should let exactly one thread win each putIfAbsent")
+    void shouldHandleConcurrentInserts() throws Exception {
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            keys.add(UUID.randomUUID());
+        }
+        AtomicInteger wins = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String name = "t" + t;
+            futures.add(executor.submit(() -> keys.forEach(key -> {
+                if (map.putIfAbsent(key, name) == null) {
+                    wins.incrementAndGet();
+                }
+                assertThat(map.get(key)).isNotNull();
+            })));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(wins.get()).isEqualTo(keys.size());
+        assertThat(map).hasSize(keys.size());
+    }
+}